@@ -1,93 +1,122 @@
 package com.example.horzlistview;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.Button;
 import android.widget.ImageView;
-import android.widget.RelativeLayout;
 import android.widget.TextView;
 
-public class HorizontalListAdapter extends BaseAdapter implements
-		View.OnClickListener {
+import com.sileria.android.view.HorzListView;
+import com.sileria.android.view.SelectionModel;
+import com.sileria.android.view.SnapshotAdapter;
+
+public class HorizontalListAdapter extends
+		SnapshotAdapter<String, CharSequence, HorizontalListAdapter.HorizontalListItemHolder>
+		implements View.OnClickListener {
 
 	private Context mContext;
-	private ArrayList<String> mData;
-	private ArrayList<Integer> mSelectedIndexes;
+	private SelectionModel mSelection;
+
+	/**
+	 * Payload telling that only the check mark of an item has to be updated.
+	 */
+	private static final Object PAYLOAD_SELECTION = new Object();
 
 	public HorizontalListAdapter(Context context, ArrayList<String> data) {
 		super();
 		this.mContext = context;
-		this.mData = data;
-		this.mSelectedIndexes = new ArrayList<Integer>();
+		this.mSelection = new SelectionModel();
+		registerDataSetObserver(mSelection.getObserver());
+		if (data != null)
+			submit(data);
+	}
+
+	/**
+	 * @return The checked items, e.g. to select all of them.
+	 */
+	public SelectionModel getSelection() {
+		return mSelection;
 	}
 
 	@Override
-	public int getCount() {
-		return mData == null ? 0 : mData.size();
+	public HorizontalListItemHolder onCreateHolder(ViewGroup parent,
+			int viewType) {
+		LayoutInflater inflater = LayoutInflater.from(mContext);
+		HorizontalListItemHolder holder = new HorizontalListItemHolder(
+				inflater.inflate(R.layout.child_layout, parent, false));
+		holder.button.setOnClickListener(this);
+		return holder;
 	}
 
+	/**
+	 * Looks up the label, possibly on a worker thread ahead of the list.
+	 */
 	@Override
-	public Object getItem(int position) {
-		return mData == null ? null : mData.size() <= position ? null : mData
-				.get(position);
+	public CharSequence prepare(String item, int position) {
+		return item;
 	}
 
 	@Override
-	public long getItemId(int position) {
-		return position;
+	public void apply(HorizontalListItemHolder holder, CharSequence label) {
+		holder.label.setText(label);
+		bindMark(holder);
 	}
 
 	@Override
-	public View getView(int position, View convertView, ViewGroup parent) {
-		HorizontalListItemHolder holder = null;
-		if (convertView == null) {
-			LayoutInflater inflater = LayoutInflater.from(mContext);
-			convertView = inflater.inflate(R.layout.child_layout, null);
-			holder = new HorizontalListItemHolder();
-			holder.button = (Button) convertView.findViewById(R.id.button);
-			holder.label = (TextView) convertView.findViewById(R.id.label);
-			holder.mark = (ImageView) convertView.findViewById(R.id.check_mark);
-			holder.index = position;
-
-			holder.button.setOnClickListener(this);
-			convertView.setTag(holder);
-		} else {
-			holder = (HorizontalListItemHolder) convertView.getTag();
+	public boolean onBindHolder(HorizontalListItemHolder holder, int position,
+			List<Object> payloads) {
+		if (!isSelectionOnly(payloads))
+			return false;
+
+		bindMark(holder);
+		return true;
+	}
+
+	/**
+	 * @return true if only the check mark changed, so the label does not need
+	 *         to be set (and measured) again.
+	 */
+	private static boolean isSelectionOnly(List<Object> payloads) {
+		for (int i = payloads.size() - 1; i >= 0; i--) {
+			if (payloads.get(i) != PAYLOAD_SELECTION)
+				return false;
 		}
+		return true;
+	}
 
-		holder.label.setText(mData.get(position));
-		if (mSelectedIndexes.contains(holder.index)) {
+	private void bindMark(HorizontalListItemHolder holder) {
+		if (mSelection.isSelected(holder.getPosition())) {
 			holder.mark.setVisibility(View.VISIBLE);
 		} else {
 			holder.mark.setVisibility(View.INVISIBLE);
 		}
-		return convertView;
 	}
 
-	public static class HorizontalListItemHolder {
-		Button button;
-		ImageView mark;
-		TextView label;
-		int index;
+	public static class HorizontalListItemHolder extends HorzListView.ViewHolder {
+		final Button button;
+		final ImageView mark;
+		final TextView label;
+
+		HorizontalListItemHolder(View itemView) {
+			super(itemView);
+			button = (Button) itemView.findViewById(R.id.button);
+			label = (TextView) itemView.findViewById(R.id.label);
+			mark = (ImageView) itemView.findViewById(R.id.check_mark);
+		}
 	}
 
 	@Override
 	public void onClick(View v) {
 
-		RelativeLayout parent = (RelativeLayout) v.getParent();
-		HorizontalListItemHolder holder = (HorizontalListItemHolder) parent
-				.getTag();
-		if (mSelectedIndexes.contains(holder.index)) {
-			mSelectedIndexes.remove(Integer.valueOf(holder.index));
-		} else {
-			mSelectedIndexes.add(holder.index);
-		}
-		notifyDataSetChanged();
+		HorzListView.ViewHolder holder = HorzListView
+				.getChildViewHolder((View) v.getParent());
+		mSelection.toggle(holder.getPosition());
+		notifyItemChanged(holder.getPosition(), PAYLOAD_SELECTION);
 
 	}
 }
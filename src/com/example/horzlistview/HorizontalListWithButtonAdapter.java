@@ -1,56 +1,76 @@
 package com.example.horzlistview;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 import android.widget.Button;
 import android.widget.ImageView;
-import android.widget.RelativeLayout;
 import android.widget.TextView;
 
-public class HorizontalListWithButtonAdapter extends BaseAdapter implements
-		View.OnClickListener {
+import com.sileria.android.view.HolderAdapter;
+import com.sileria.android.view.HorzListView;
+import com.sileria.android.view.SelectionModel;
 
-	private static final int VIEW_TYPE_NORMAL = 0;
-	private static final int VIEW_TYPE_BUTTON = 1;
+public class HorizontalListWithButtonAdapter extends
+		HolderAdapter<HorizontalListWithButtonAdapter.HorizontalListItemHolder>
+		implements View.OnClickListener {
 
 	private Context mContext;
 	private ArrayList<String> mData;
-	private ArrayList<Integer> mSelectedIndexes;
+	private SelectionModel mSelection;
+	private HorzListView mList;
+	private Button mFooter;
+
+	/**
+	 * Payload telling that only the check mark of an item has to be updated.
+	 */
+	private static final Object PAYLOAD_SELECTION = new Object();
 
 	public HorizontalListWithButtonAdapter(Context context,
 			ArrayList<String> data) {
 		super();
 		this.mContext = context;
 		this.mData = data;
-		this.mSelectedIndexes = new ArrayList<Integer>();
+		this.mSelection = new SelectionModel();
+		registerDataSetObserver(mSelection.getObserver());
 	}
 
-	@Override
-	public int getViewTypeCount() {
-		return 2;
+	/**
+	 * @return The checked items, e.g. to select all of them.
+	 */
+	public SelectionModel getSelection() {
+		return mSelection;
 	}
 
-	@Override
-	public int getItemViewType(int position) {
-		if (position < mData.size())
-			return VIEW_TYPE_NORMAL;
-		else
-			return VIEW_TYPE_BUTTON;
+	/**
+	 * Sets this adapter on the list with the button after the items, as a
+	 * footer view outside the adapter. The button moves along if it was
+	 * attached before, it is only added once.
+	 */
+	public void attachTo(HorzListView list) {
+		if (mFooter == null) {
+			mFooter = new Button(mContext);
+			mFooter.setText("click me");
+		}
+		if (mList != null)
+			mList.removeFooterView(mFooter);
+		mList = list;
+		list.addFooterView(mFooter);
+		list.setAdapter(this);
 	}
 
 	@Override
 	public int getCount() {
-		return mData == null ? 1 : mData.size() + 1;
+		return mData == null ? 0 : mData.size();
 	}
 
 	@Override
 	public Object getItem(int position) {
-		return mData == null ? null : mData.size() >= position ? null : mData
+		return mData == null ? null : mData.size() <= position ? null : mData
 				.get(position);
 	}
 
@@ -60,82 +80,71 @@ public class HorizontalListWithButtonAdapter extends BaseAdapter implements
 	}
 
 	@Override
-	public View getView(int position, View convertView, ViewGroup parent) {
-		int viewType = getItemViewType(position);
-		if (viewType == VIEW_TYPE_NORMAL) {
-			HorizontalListItemHolder holder = null;
-			if (convertView == null) {
-				LayoutInflater inflater = LayoutInflater.from(mContext);
-				convertView = inflater.inflate(R.layout.child_layout, null);
-				holder = new HorizontalListItemHolder();
-				holder.button = (Button) convertView.findViewById(R.id.button);
-				holder.label = (TextView) convertView.findViewById(R.id.label);
-				holder.mark = (ImageView) convertView
-						.findViewById(R.id.check_mark);
-				holder.index = position;
-
-				holder.button.setOnClickListener(this);
-				convertView.setTag(holder);
-			} else {
-				holder = (HorizontalListItemHolder) convertView.getTag();
-			}
-
-			holder.label.setText(mData.get(position));
-			if (mSelectedIndexes.contains(holder.index)) {
-				holder.mark.setVisibility(View.VISIBLE);
-			} else {
-				holder.mark.setVisibility(View.INVISIBLE);
-			}
+	public HorizontalListItemHolder onCreateHolder(ViewGroup parent,
+			int viewType) {
+		LayoutInflater inflater = LayoutInflater.from(mContext);
+		HorizontalListItemHolder holder = new HorizontalListItemHolder(
+				inflater.inflate(R.layout.child_layout, parent, false));
+		holder.button.setOnClickListener(this);
+		return holder;
+	}
+
+	@Override
+	public void onBindHolder(HorizontalListItemHolder holder, int position) {
+		holder.label.setText(mData.get(position));
+		bindMark(holder);
+	}
+
+	@Override
+	public boolean onBindHolder(HorizontalListItemHolder holder, int position,
+			List<Object> payloads) {
+		if (!isSelectionOnly(payloads))
+			return false;
+
+		bindMark(holder);
+		return true;
+	}
+
+	/**
+	 * @return true if only the check mark changed, so the label does not need
+	 *         to be set (and measured) again.
+	 */
+	private static boolean isSelectionOnly(List<Object> payloads) {
+		for (int i = payloads.size() - 1; i >= 0; i--) {
+			if (payloads.get(i) != PAYLOAD_SELECTION)
+				return false;
+		}
+		return true;
+	}
+
+	private void bindMark(HorizontalListItemHolder holder) {
+		if (mSelection.isSelected(holder.getPosition())) {
+			holder.mark.setVisibility(View.VISIBLE);
 		} else {
-			if (convertView == null) {
-				convertView = new Button(mContext);
-				((Button) convertView).setText("click me");
-			}
+			holder.mark.setVisibility(View.INVISIBLE);
 		}
-//		HorizontalListItemHolder holder = null;
-//		if (convertView == null) {
-//			LayoutInflater inflater = LayoutInflater.from(mContext);
-//			convertView = inflater.inflate(R.layout.child_layout, null);
-//			holder = new HorizontalListItemHolder();
-//			holder.button = (Button) convertView.findViewById(R.id.button);
-//			holder.label = (TextView) convertView.findViewById(R.id.label);
-//			holder.mark = (ImageView) convertView.findViewById(R.id.check_mark);
-//			holder.index = position;
-//
-//			holder.button.setOnClickListener(this);
-//			convertView.setTag(holder);
-//		} else {
-//			holder = (HorizontalListItemHolder) convertView.getTag();
-//		}
-//
-//		holder.label.setText(mData.get(position));
-//		if (mSelectedIndexes.contains(holder.index)) {
-//			holder.mark.setVisibility(View.VISIBLE);
-//		} else {
-//			holder.mark.setVisibility(View.INVISIBLE);
-//		}
-		return convertView;
 	}
 
-	public static class HorizontalListItemHolder {
-		Button button;
-		ImageView mark;
-		TextView label;
-		int index;
+	public static class HorizontalListItemHolder extends HorzListView.ViewHolder {
+		final Button button;
+		final ImageView mark;
+		final TextView label;
+
+		HorizontalListItemHolder(View itemView) {
+			super(itemView);
+			button = (Button) itemView.findViewById(R.id.button);
+			label = (TextView) itemView.findViewById(R.id.label);
+			mark = (ImageView) itemView.findViewById(R.id.check_mark);
+		}
 	}
 
 	@Override
 	public void onClick(View v) {
 
-		RelativeLayout parent = (RelativeLayout) v.getParent();
-		HorizontalListItemHolder holder = (HorizontalListItemHolder) parent
-				.getTag();
-		if (mSelectedIndexes.contains(holder.index)) {
-			mSelectedIndexes.remove(Integer.valueOf(holder.index));
-		} else {
-			mSelectedIndexes.add(holder.index);
-		}
-		notifyDataSetChanged();
+		HorzListView.ViewHolder holder = HorzListView
+				.getChildViewHolder((View) v.getParent());
+		mSelection.toggle(holder.getPosition());
+		notifyItemChanged(holder.getPosition(), PAYLOAD_SELECTION);
 
 	}
 }
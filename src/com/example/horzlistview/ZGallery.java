@@ -5,17 +5,13 @@ import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.widget.Gallery;
 
+import com.sileria.android.view.TouchTracker;
+
 @SuppressWarnings("deprecation")
 public class ZGallery extends Gallery {
 
-    // Constants
-    protected static final float DRAG_THRESHOLD = 10; // If dragging for more than this amount of pixels, means it's a scroll
-
     // Properties
-    protected boolean isPressed;
-    protected float startPressX;
-    protected float startPressY;
-    protected boolean isDragging;
+    protected final TouchTracker mTouchTracker;
 
     // ================================================================================================================
     // CONSTRUCTOR ----------------------------------------------------------------------------------------------------
@@ -30,6 +26,20 @@ public class ZGallery extends Gallery {
 
 	public ZGallery(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
+
+        // Gallery does its own long press handling
+        mTouchTracker = new TouchTracker(this, new TouchTracker.SimpleCallback() {
+            @Override
+            public void onDragStart(MotionEvent e, boolean intercepted) {
+                if (intercepted) {
+                    // Inject a down from the correct position so superclass code knows where to drag from.
+                    // The event is rewritten in place and put back, nothing is obtained.
+                    mTouchTracker.rewindToDown(e);
+                    superTouchEvent(e);
+                    mTouchTracker.restore(e);
+                }
+            }
+        });
     }
 
     // ================================================================================================================
@@ -37,83 +47,33 @@ public class ZGallery extends Gallery {
 
     @Override
     public boolean onInterceptTouchEvent(MotionEvent __e) {
-        // Intercepts all touch screen motion events.  This allows you to watch events as they are dispatched to your children, and take ownership of the current gesture at any point.
-        // Return true to steal motion events from the children and have them dispatched to this ViewGroup through onTouchEvent().
-        // The current target will receive an ACTION_CANCEL event, and no further messages will be delivered here.
-
-        //return super.onInterceptTouchEvent(__e); // super always returns false
-
-        // If this function returns TRUE, NO children get dragging events. This only happens
-        // the first interception (mouse down); if true is returned, nothing is intercepted anymore, and
-        // events are passed to onTouchEvent directly.
-        // If FALSE is returned, this may be called again, but only if there's a children receiving the
-        // events instead of this.
-        // In sum, once onTouchEvent is called here, onInterceptTouchEvent is not called anymore.
-
-        // Interprets drag data
-        return evaluateTouchEvent(__e);
-
+        // Watches the events dispatched to the children and steals the gesture once it turns into a horizontal drag.
+        // After that the events are delivered to onTouchEvent() directly.
+        return mTouchTracker.onInterceptTouchEvent(__e);
     }
 
 	@Override
     public boolean onTouchEvent(MotionEvent __e) {
         // Interprets drag data
-        evaluateTouchEvent(__e);
+        mTouchTracker.onTouchEvent(__e);
 
         // Properly lets superclass interpret touch events (for dragging, fling, etc)
         return super.onTouchEvent(__e);
     }
 
-	protected boolean evaluateTouchEvent(MotionEvent __e) {
-        // Interprets motion to see if the user is dragging the View
-        // This will run in parallel with the children events
-        float dragDeltaX;
-        float dragDeltaY;
-
-        switch (__e.getAction()) {
-            case MotionEvent.ACTION_DOWN:
-                // Pressing...
-                isPressed = true;
-                startPressX = __e.getX();
-                startPressY = __e.getY();
-                break;
-            case MotionEvent.ACTION_MOVE:
-                // Moving...
-                if (isPressed && !isDragging) {
-                    dragDeltaX = __e.getX() - startPressX;
-                    dragDeltaY = __e.getY() - startPressY;
-
-                    if (Math.abs(dragDeltaX) > DRAG_THRESHOLD || Math.abs(dragDeltaY) > DRAG_THRESHOLD) {
-                        // Moved too far, means it's dragging!
-
-                        // Inject click from correct position so superclass code knows where to drag from
-                        MotionEvent me = MotionEvent.obtain(__e);
-                        me.setAction(MotionEvent.ACTION_DOWN);
-                        me.setLocation(__e.getX() - dragDeltaX, __e.getY() - dragDeltaY);
-                        super.onTouchEvent(me);
-
-                        isDragging = true;
-                    }
-                }
-                break;
-            case MotionEvent.ACTION_UP:
-                // Releasing...
-                if (isPressed) {
-                    isPressed = false;
-                    // Let go while pressed
-                    if (isDragging) {
-                        // Was dragging, so just go back
-                        isDragging = false;
-                    } else {
-                        // Was not dragging, this will trigger a click
-                    }
-                }
-                break;
-        }
+    private boolean superTouchEvent(MotionEvent __e) {
+        return super.onTouchEvent(__e);
+    }
 
+    @Override
+    public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+        // Use the velocity measured by the tracker so both widgets fling alike
+        return super.onFling(e1, e2, mTouchTracker.getXVelocity(), mTouchTracker.getYVelocity());
+    }
 
-        // If not dragging, event should be passed on
-        // If dragging, the event should be intercepted and interpreted by this gallery's onTouchEvent instead
-        return isDragging;
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        mTouchTracker.recycle();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.util.List;
+
+import android.database.DataSetObserver;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ListAdapter;
+
+/**
+ * Joins several adapters into one, e.g. pinned items, recommendations and a
+ * trailing action. Each adapter gets its own range of view types, so the
+ * recycler keeps separate pools for them and never hands a view of one
+ * adapter to another. Positions and ids are mapped to the adapters with a
+ * binary search over their start positions, and changes of an adapter are
+ * passed on as granular changes shifted to its range.
+ * <p/>
+ * Stable ids are namespaced with the index of the adapter in the top
+ * {@value #ID_INDEX_BITS} bits, so the ids of each adapter must fit in the
+ * remaining bits.
+ *
+ * @since API 8
+ */
+public class ConcatListAdapter extends GranularAdapter implements
+		PrefetchingAdapter {
+
+	/**
+	 * High bits of an id that hold the adapter index.
+	 */
+	public static final int ID_INDEX_BITS = 8;
+
+	private static final int ID_SHIFT = 64 - ID_INDEX_BITS;
+	private static final long ID_MASK = (1L << ID_SHIFT) - 1;
+
+	private final ListAdapter[] mAdapters;
+	private final ChildObserver[] mChildObservers;
+
+	/**
+	 * Start position of each adapter, plus the total count at the end.
+	 */
+	private final int[] mStarts;
+
+	/**
+	 * First view type of each adapter, plus the type count at the end.
+	 */
+	private final int[] mTypeStarts;
+
+	private boolean mStartsValid;
+	private int mObserverCount;
+
+	public ConcatListAdapter(ListAdapter... adapters) {
+		final int k = adapters.length;
+		if (k == 0 || k > 1 << ID_INDEX_BITS)
+			throw new IllegalArgumentException("Adapter count: " + k);
+
+		mAdapters = adapters.clone();
+		mChildObservers = new ChildObserver[k];
+		mStarts = new int[k + 1];
+		mTypeStarts = new int[k + 1];
+
+		for (int i = 0; i < k; i++) {
+			mChildObservers[i] = new ChildObserver(i);
+			mTypeStarts[i + 1] = mTypeStarts[i]
+					+ mAdapters[i].getViewTypeCount();
+		}
+	}
+
+	public ConcatListAdapter(List<? extends ListAdapter> adapters) {
+		this(adapters.toArray(new ListAdapter[adapters.size()]));
+	}
+
+	public int getAdapterCount() {
+		return mAdapters.length;
+	}
+
+	public ListAdapter getAdapter(int index) {
+		return mAdapters[index];
+	}
+
+	/**
+	 * @return true if views of this adapter can be converted by the other,
+	 *         i.e. both join adapters of the same classes with the same view
+	 *         type counts in the same order.
+	 */
+	public boolean isCompatibleWith(ConcatListAdapter other) {
+		if (other.mAdapters.length != mAdapters.length)
+			return false;
+		for (int i = 0; i < mAdapters.length; i++) {
+			if (other.mAdapters[i].getClass() != mAdapters[i].getClass()
+					|| other.mTypeStarts[i + 1] != mTypeStarts[i + 1])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return Index of the adapter holding the given position.
+	 */
+	public int getAdapterIndex(int position) {
+		final int[] starts = ensureStarts();
+
+		// Last adapter starting at or before the position, empty adapters
+		// share their start with the next one and are skipped that way
+		int lo = 0;
+		int hi = mAdapters.length - 1;
+		while (lo < hi) {
+			final int mid = (lo + hi + 1) >>> 1;
+			if (starts[mid] <= position)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		return lo;
+	}
+
+	/**
+	 * @return Position within its adapter of the given position.
+	 */
+	public int getLocalPosition(int position) {
+		return position - ensureStarts()[getAdapterIndex(position)];
+	}
+
+	/**
+	 * @return First position of the adapter with the given index.
+	 */
+	public int getAdapterStart(int index) {
+		return ensureStarts()[index];
+	}
+
+	/**
+	 * @return Index of the adapter an id returned by {@link #getItemId(int)}
+	 *         belongs to.
+	 */
+	public static int getAdapterIndexForId(long id) {
+		return (int) (id >>> ID_SHIFT);
+	}
+
+	/**
+	 * @return The id of the adapter an id returned by
+	 *         {@link #getItemId(int)} was made of.
+	 */
+	public static long getLocalId(long id) {
+		return id & ID_MASK;
+	}
+
+	private int[] ensureStarts() {
+		// Without observers changes go unnoticed, so nothing is kept
+		if (!mStartsValid || mObserverCount == 0) {
+			final int[] starts = mStarts;
+			for (int i = 0; i < mAdapters.length; i++) {
+				starts[i + 1] = starts[i] + mAdapters[i].getCount();
+			}
+			mStartsValid = true;
+		}
+		return mStarts;
+	}
+
+	@Override
+	public void registerDataSetObserver(DataSetObserver observer) {
+		super.registerDataSetObserver(observer);
+		if (mObserverCount++ == 0) {
+			for (int i = 0; i < mAdapters.length; i++) {
+				mAdapters[i].registerDataSetObserver(mChildObservers[i]);
+			}
+			mStartsValid = false;
+		}
+	}
+
+	@Override
+	public void unregisterDataSetObserver(DataSetObserver observer) {
+		super.unregisterDataSetObserver(observer);
+		if (--mObserverCount == 0) {
+			for (int i = 0; i < mAdapters.length; i++) {
+				mAdapters[i].unregisterDataSetObserver(mChildObservers[i]);
+			}
+		}
+	}
+
+	public int getCount() {
+		return ensureStarts()[mAdapters.length];
+	}
+
+	@Override
+	public boolean areAllItemsEnabled() {
+		for (ListAdapter adapter : mAdapters) {
+			if (!adapter.areAllItemsEnabled())
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean isEnabled(int position) {
+		final int index = getAdapterIndex(position);
+		return mAdapters[index].isEnabled(position - mStarts[index]);
+	}
+
+	public Object getItem(int position) {
+		final int index = getAdapterIndex(position);
+		return mAdapters[index].getItem(position - mStarts[index]);
+	}
+
+	public long getItemId(int position) {
+		final int index = getAdapterIndex(position);
+		final long id = mAdapters[index].getItemId(position - mStarts[index]);
+		return ((long) index << ID_SHIFT) | (id & ID_MASK);
+	}
+
+	@Override
+	public boolean hasStableIds() {
+		for (ListAdapter adapter : mAdapters) {
+			if (!adapter.hasStableIds())
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int getItemViewType(int position) {
+		final int index = getAdapterIndex(position);
+		final int type = mAdapters[index].getItemViewType(position
+				- mStarts[index]);
+
+		// Ignored and header/footer types stay as they are
+		return type < 0 ? type : mTypeStarts[index] + type;
+	}
+
+	@Override
+	public int getViewTypeCount() {
+		return Math.max(1, mTypeStarts[mAdapters.length]);
+	}
+
+	public View getView(int position, View convertView, ViewGroup parent) {
+		final int index = getAdapterIndex(position);
+		return mAdapters[index].getView(position - mStarts[index],
+				convertView, parent);
+	}
+
+	public void prefetch(int fromPosition, int toPosition, int firstVisible,
+			int lastVisible) {
+		final int count = getCount();
+		if (count == 0)
+			return;
+		fromPosition = Math.max(0, fromPosition);
+		toPosition = Math.min(count - 1, toPosition);
+
+		// Split the range over the adapters it covers
+		for (int index = getAdapterIndex(fromPosition); fromPosition <= toPosition; index++) {
+			final int start = mStarts[index];
+			final int last = mStarts[index + 1] - 1;
+			final int end = Math.min(toPosition, last);
+			final ListAdapter adapter = mAdapters[index];
+			if (end >= fromPosition && adapter instanceof PrefetchingAdapter)
+				((PrefetchingAdapter) adapter).prefetch(fromPosition - start,
+						end - start, Math.max(firstVisible, start) - start,
+						Math.min(lastVisible, last) - start);
+			fromPosition = Math.max(fromPosition, end + 1);
+		}
+	}
+
+	public void cancelPrefetch() {
+		for (ListAdapter adapter : mAdapters) {
+			if (adapter instanceof PrefetchingAdapter)
+				((PrefetchingAdapter) adapter).cancelPrefetch();
+		}
+	}
+
+	@Override
+	public boolean onBindPayloads(int position, View view, List<Object> payloads) {
+		final int index = getAdapterIndex(position);
+		final ListAdapter adapter = mAdapters[index];
+		return adapter instanceof GranularAdapter
+				&& ((GranularAdapter) adapter).onBindPayloads(position
+						- mStarts[index], view, payloads);
+	}
+
+	/**
+	 * Passes on the changes of one adapter shifted to its range.
+	 */
+	private class ChildObserver extends ItemChangeObserver {
+
+		private final int mIndex;
+
+		ChildObserver(int index) {
+			mIndex = index;
+		}
+
+		@Override
+		public void onChanged() {
+			mStartsValid = false;
+			notifyDataSetChanged();
+		}
+
+		@Override
+		public void onInvalidated() {
+			mStartsValid = false;
+			notifyDataSetInvalidated();
+		}
+
+		@Override
+		public void onItemRangeChanged(int positionStart, int itemCount,
+				Object payload) {
+			notifyItemRangeChanged(getAdapterStart(mIndex) + positionStart,
+					itemCount, payload);
+		}
+
+		@Override
+		public void onItemRangeInserted(int positionStart, int itemCount) {
+			mStartsValid = false;
+			notifyItemRangeInserted(getAdapterStart(mIndex) + positionStart,
+					itemCount);
+		}
+
+		@Override
+		public void onItemRangeRemoved(int positionStart, int itemCount) {
+			mStartsValid = false;
+			notifyItemRangeRemoved(getAdapterStart(mIndex) + positionStart,
+					itemCount);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import android.widget.AdapterView;
+
+/**
+ * Paged adapter over a {@link CursorWindowSource}. A small ring of row windows
+ * around the viewport is kept loaded and windows ahead of the scroll are
+ * queried in the background, so <code>getItem</code> and
+ * <code>getItemId</code> never block. Rows of windows not loaded yet are bound
+ * as placeholders.
+ *
+ * @param <E>
+ *            Row type
+ * @param <VH>
+ *            Holder type
+ * @since API 8
+ */
+public abstract class CursorWindowAdapter<E, VH extends HorzListView.ViewHolder>
+		extends PagedAdapter<E, VH> {
+
+	private final CursorWindowSource<E> mSource;
+
+	/**
+	 * @param source
+	 *            Table to show
+	 * @param windowSize
+	 *            Rows per query
+	 * @param windows
+	 *            Most windows kept loaded
+	 */
+	public CursorWindowAdapter(CursorWindowSource<E> source, int windowSize,
+			int windows) {
+		super(source, windowSize, windows, 0);
+		mSource = source;
+	}
+
+	/**
+	 * @return The row id, or {@link AdapterView#INVALID_ROW_ID} if the row is
+	 *         not loaded.
+	 */
+	@Override
+	public long getItemId(int position) {
+		final E item = getItem(position);
+		return item != null ? mSource.getRowId(item) : AdapterView.INVALID_ROW_ID;
+	}
+
+	/**
+	 * Queries the table again, e.g. after it was written to.
+	 */
+	public void requery() {
+		refresh();
+	}
+
+	/**
+	 * Also makes the source count the rows again.
+	 */
+	@Override
+	public void refresh() {
+		mSource.invalidate();
+		super.refresh();
+	}
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Process;
+import android.util.SparseArray;
+
+/**
+ * {@link PagedSource} over a SQLite table. Each page is a window of rows read
+ * on a background thread into plain items, so the cursor is closed before the
+ * window is handed to the list and nothing touches the database on the main
+ * thread.
+ * <p/>
+ * The row count is queried once, with the first window after creation or
+ * {@link #invalidate()}, and corrected from the windows read afterwards: a
+ * short window marks the end of the table.
+ * <p/>
+ * By default windows are read with <code>LIMIT</code>/<code>OFFSET</code>,
+ * which makes SQLite step over all the rows before the window, so deep windows
+ * of a large table get slower. With a key column (see
+ * {@link #setKeyColumn(String)}) a window next to one already read starts
+ * from that window's first or last key instead, which costs the same at any
+ * depth. Only windows with no loaded neighbour, e.g. after a jump, still use
+ * an offset.
+ *
+ * @param <E>
+ *            Row type
+ * @see CursorWindowAdapter
+ * @since API 8
+ */
+public abstract class CursorWindowSource<E> implements PagedSource<E> {
+
+	private static Executor sDefaultExecutor;
+
+	private final Executor mExecutor;
+
+	private final SQLiteDatabase mDatabase;
+	private final String mTable;
+	private final String[] mColumns;
+	private final String mSelection;
+	private final String[] mSelectionArgs;
+	private String mOrderBy;
+
+	/**
+	 * Unique integer column the rows are ordered by, null to only use offsets.
+	 */
+	private String mKeyColumn;
+
+	/**
+	 * First and last key of the windows read, by page.
+	 */
+	private final SparseArray<long[]> mPageKeys = new SparseArray<long[]>();
+
+	/**
+	 * Row count, -1 until queried.
+	 */
+	private volatile int mCount = -1;
+
+	/**
+	 * Bumped by {@link #invalidate()}, older loads do not record their count
+	 * or keys.
+	 */
+	private volatile int mGeneration;
+
+	/**
+	 * Uses a shared background thread, SQLite serializes access to a database
+	 * anyway.
+	 */
+	public CursorWindowSource(SQLiteDatabase db, String table,
+			String[] columns, String selection, String[] selectionArgs,
+			String orderBy) {
+		this(getDefaultExecutor(), db, table, columns, selection,
+				selectionArgs, orderBy);
+	}
+
+	/**
+	 * @param executor
+	 *            Runs the window queries.
+	 * @param orderBy
+	 *            Must give a stable order, e.g. end with the primary key, or
+	 *            windows may overlap.
+	 */
+	public CursorWindowSource(Executor executor, SQLiteDatabase db,
+			String table, String[] columns, String selection,
+			String[] selectionArgs, String orderBy) {
+		mExecutor = executor;
+		mDatabase = db;
+		mTable = table;
+		mColumns = columns;
+		mSelection = selection;
+		mSelectionArgs = selectionArgs;
+		mOrderBy = orderBy;
+	}
+
+	private static synchronized Executor getDefaultExecutor() {
+		if (sDefaultExecutor == null) {
+			sDefaultExecutor = Executors
+					.newSingleThreadExecutor(new ThreadFactory() {
+						public Thread newThread(final Runnable r) {
+							final Thread thread = new Thread(new Runnable() {
+								public void run() {
+									Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+									r.run();
+								}
+							}, "CursorWindowSource");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return sDefaultExecutor;
+	}
+
+	/**
+	 * Reads windows next to loaded ones by key range instead of offset. The
+	 * rows are then ordered by this column, ascending, instead of the order
+	 * given to the constructor. Call before the first load.
+	 *
+	 * @param column
+	 *            Unique integer column, e.g. <code>_id</code>, that is also
+	 *            among the queried columns.
+	 */
+	public void setKeyColumn(String column) {
+		mKeyColumn = column;
+		mOrderBy = column;
+	}
+
+	/**
+	 * Read the current row. Called on the query thread.
+	 */
+	protected abstract E readRow(Cursor cursor);
+
+	/**
+	 * @return The row id of an item read by {@link #readRow(Cursor)}.
+	 */
+	public abstract long getRowId(E item);
+
+	/**
+	 * Forgets the row count and keys, e.g. after the table was written to.
+	 * The next load queries the count again.
+	 */
+	public void invalidate() {
+		synchronized (mPageKeys) {
+			mGeneration++;
+			mCount = -1;
+			mPageKeys.clear();
+		}
+	}
+
+	public void loadPage(final int page, final int pageSize,
+			final Callback<E> callback) {
+		final int generation = mGeneration;
+		mExecutor.execute(new Runnable() {
+			public void run() {
+				final ArrayList<E> items = new ArrayList<E>(pageSize);
+				int count;
+				boolean forward;
+				try {
+					count = mCount;
+					if (count < 0)
+						count = (int) DatabaseUtils.longForQuery(mDatabase,
+								countQuery(), mSelectionArgs);
+					forward = readWindow(generation, page, pageSize, items);
+				} catch (RuntimeException e) {
+					callback.onPageFailed(page, e);
+					return;
+				}
+
+				// Keep the count in line with what the window found. Only a
+				// window read forward from the page start ends where the
+				// table does; a short backward window says nothing of the end
+				final int end = page * pageSize + items.size();
+				if (forward && items.size() < pageSize)
+					count = end;
+				else if (forward)
+					count = Math.max(count, end);
+				synchronized (mPageKeys) {
+					if (generation == mGeneration)
+						mCount = count;
+				}
+				callback.onPageLoaded(page, items, count);
+			}
+		});
+	}
+
+	/**
+	 * Reads the rows of a page into {@code items}, in list order.
+	 * 
+	 * @return {@code false} when the rows were read backwards from the next
+	 *         page, so the window is anchored at its end
+	 */
+	private boolean readWindow(int generation, int page, int pageSize,
+			ArrayList<E> items) {
+		String selection = mSelection;
+		String[] args = mSelectionArgs;
+		String orderBy = mOrderBy;
+		String limit = (long) page * pageSize + "," + pageSize;
+		boolean descending = false;
+
+		if (mKeyColumn != null) {
+			final long[] before;
+			final long[] after;
+			synchronized (mPageKeys) {
+				before = mPageKeys.get(page - 1);
+				after = mPageKeys.get(page + 1);
+			}
+			if (before != null) {
+				selection = and(mKeyColumn + " > ?");
+				args = withArg(before[1]);
+				limit = String.valueOf(pageSize);
+			} else if (after != null) {
+				selection = and(mKeyColumn + " < ?");
+				args = withArg(after[0]);
+				orderBy = mKeyColumn + " DESC";
+				limit = String.valueOf(pageSize);
+				descending = true;
+			}
+		}
+
+		final Cursor cursor = mDatabase.query(mTable, mColumns, selection,
+				args, null, null, orderBy, limit);
+		long firstKey = 0, lastKey = 0;
+		try {
+			final int keyIndex = mKeyColumn != null ? cursor
+					.getColumnIndexOrThrow(mKeyColumn) : -1;
+			while (cursor.moveToNext()) {
+				items.add(readRow(cursor));
+				if (keyIndex >= 0) {
+					lastKey = cursor.getLong(keyIndex);
+					if (items.size() == 1)
+						firstKey = lastKey;
+				}
+			}
+		} finally {
+			cursor.close();
+		}
+
+		if (descending) {
+			Collections.reverse(items);
+			final long key = firstKey;
+			firstKey = lastKey;
+			lastKey = key;
+		}
+		if (mKeyColumn != null && !items.isEmpty()) {
+			synchronized (mPageKeys) {
+				if (generation == mGeneration)
+					mPageKeys.put(page, new long[] { firstKey, lastKey });
+			}
+		}
+		return !descending;
+	}
+
+	private String and(String condition) {
+		return mSelection != null ? "(" + mSelection + ") AND " + condition
+				: condition;
+	}
+
+	private String[] withArg(long key) {
+		final int n = mSelectionArgs != null ? mSelectionArgs.length : 0;
+		final String[] args = new String[n + 1];
+		if (n > 0)
+			System.arraycopy(mSelectionArgs, 0, args, 0, n);
+		args[n] = Long.toString(key);
+		return args;
+	}
+
+	private String countQuery() {
+		return "SELECT COUNT(*) FROM " + mTable
+				+ (mSelection != null ? " WHERE " + mSelection : "");
+	}
+}
@@ -28,6 +28,8 @@ import android.view.*;
 import android.view.accessibility.*;
 import android.widget.*;
 
+import java.util.ArrayList;
+
 /**
  * A derivation of {@link android.widget.AdapterView} which was needed to make
  * members accessable to sub-classes. I wish there were engineers with proper
@@ -89,6 +91,12 @@ public abstract class FriendAdapterView<T extends Adapter> extends AdapterView<T
 	 */
 	protected int mSpecificTop;
 
+	/**
+	 * The left edge in pixels the selected view is laid out at during the next layout, or
+	 * {@link Integer#MIN_VALUE} to keep it where it is.
+	 */
+	protected int mSpecificLeft = Integer.MIN_VALUE;
+
 	/**
 	 * Position from which to start looking for mSyncRowId
 	 */
@@ -211,6 +219,21 @@ public abstract class FriendAdapterView<T extends Adapter> extends AdapterView<T
 
 	private SelectionNotifier mSelectionNotifier;
 
+	/**
+	 * Decides which selection changes are dispatched while the list moves, null for all.
+	 */
+	private SelectionDispatchPolicy mSelectionDispatchPolicy;
+
+	/**
+	 * A selection change was held back by {@link #mSelectionDispatchPolicy}.
+	 */
+	private boolean mSelectionDispatchPending;
+
+	/**
+	 * Time of the last selection change dispatch.
+	 */
+	private long mLastSelectionDispatchTime;
+
 	/**
 	 * When set to true, calls to requestLayout() will not propagate up the parent hierarchy.
 	 * This is used to layout the children during a layout pass.
@@ -219,6 +242,12 @@ public abstract class FriendAdapterView<T extends Adapter> extends AdapterView<T
 
 	protected final RecycleBin mRecycler = new RecycleBin();
 
+	/**
+	 * Cached left and right edges of the attached children, in child index order.
+	 * Sub-classes maintain it as they add, offset and detach children.
+	 */
+	protected final ChildEdges mChildEdges = new ChildEdges();
+
 	public FriendAdapterView (Context context) {
 		super( context );
 		init();
@@ -311,6 +340,14 @@ public abstract class FriendAdapterView<T extends Adapter> extends AdapterView<T
 			return INVALID_POSITION;
 		}
 
+		// Binary search the cached edges first, children are sorted by x
+		if (isChildEdgesValid()) {
+			int index = mChildEdges.indexAt( listItem.getLeft() );
+			if (index >= 0 && getChildAt( index ) == listItem) {
+				return mFirstPosition + index;
+			}
+		}
+
 		// Search the children for the list item
 		final int childCount = getChildCount();
 		for (int i = 0; i < childCount; i++) {
@@ -323,6 +360,14 @@ public abstract class FriendAdapterView<T extends Adapter> extends AdapterView<T
 		return INVALID_POSITION;
 	}
 
+	/**
+	 * Whether the {@link #mChildEdges} cache matches the attached children and can be
+	 * binary searched. Sub-classes laying out children out of x order should return false.
+	 */
+	protected boolean isChildEdgesValid () {
+		return mChildEdges.size() == getChildCount();
+	}
+
 	/**
 	 * Returns the position within the adapter's data set for the first item
 	 * displayed on screen.
@@ -683,6 +728,9 @@ public abstract class FriendAdapterView<T extends Adapter> extends AdapterView<T
 		mNeedSync = false;
 
 		removeAllViewsInLayout();
+		mChildEdges.clear();
+		mRecycler.clearScrap();
+		mSpecificLeft = Integer.MIN_VALUE;
 		mOldSelectedPosition = INVALID_POSITION;
 		mOldSelectedRowId = INVALID_ROW_ID;
 
@@ -727,7 +775,28 @@ public abstract class FriendAdapterView<T extends Adapter> extends AdapterView<T
 		return new AdapterDataSetObserver();
 	}
 
-	protected class AdapterDataSetObserver extends DataSetObserver {
+	/**
+	 * Rebind the attached children of a range of changed items without a full layout.
+	 *
+	 * @param payload Optional hint of what changed
+	 * @return false if the change could not be handled locally, in which case the whole
+	 *         data set is treated as changed.
+	 */
+	protected boolean rebindItems (int positionStart, int itemCount, Object payload) {
+		return false;
+	}
+
+	/**
+	 * Treat the whole data set as changed, e.g. when a deferred rebind could not be done
+	 * locally after all.
+	 */
+	protected void invalidateDataSet () {
+		if (mDataSetObserver != null && mAdapter != null) {
+			mDataSetObserver.onChanged();
+		}
+	}
+
+	protected class AdapterDataSetObserver extends ItemChangeObserver {
 
 		private Parcelable mInstanceState = null;
 
@@ -773,6 +842,13 @@ public abstract class FriendAdapterView<T extends Adapter> extends AdapterView<T
 			requestLayout();
 		}
 
+		@Override
+		public void onItemRangeChanged (int positionStart, int itemCount, Object payload) {
+			if (!rebindItems( positionStart, itemCount, payload )) {
+				onChanged();
+			}
+		}
+
 		public void clearSavedState () {
 			mInstanceState = null;
 		}
@@ -801,10 +877,64 @@ public abstract class FriendAdapterView<T extends Adapter> extends AdapterView<T
 		}
 	}
 
+	/**
+	 * Limit the item selected callbacks and accessibility events sent while the list is
+	 * scrolling or flinging. Changes held back are coalesced and the last one is always
+	 * dispatched when the list comes to rest.
+	 *
+	 * @param policy Dispatch policy, or null to dispatch every change (the default).
+	 */
+	public void setSelectionDispatchPolicy (SelectionDispatchPolicy policy) {
+		mSelectionDispatchPolicy = policy;
+		if (policy == null) {
+			flushSelectionChanged();
+		}
+	}
+
+	/**
+	 * @return true while the list is being scrolled or flung. Selection changes are only
+	 *         held back by the dispatch policy while moving.
+	 */
+	protected boolean isInMotion () {
+		return false;
+	}
+
+	/**
+	 * @return Current speed of the list in pixels per second.
+	 */
+	protected float getMotionVelocity () {
+		return 0;
+	}
+
+	/**
+	 * Dispatch a selection change held back by the dispatch policy, sub-classes call it
+	 * when the list comes to rest.
+	 */
+	protected void flushSelectionChanged () {
+		if (mSelectionDispatchPending) {
+			dispatchSelectionChanged();
+		}
+	}
+
 	protected void selectionChanged () {
 
 		updateSelector();
 
+		if (mSelectionDispatchPolicy != null && isInMotion()) {
+			final long sinceLast = SystemClock.uptimeMillis() - mLastSelectionDispatchTime;
+			if (!mSelectionDispatchPolicy.shouldDispatch( sinceLast, getMotionVelocity() )) {
+				mSelectionDispatchPending = true;
+				return;
+			}
+		}
+
+		dispatchSelectionChanged();
+	}
+
+	private void dispatchSelectionChanged () {
+		mSelectionDispatchPending = false;
+		mLastSelectionDispatchTime = SystemClock.uptimeMillis();
+
 		if (getOnItemSelectedListener() != null) {
 			if (mInLayout || mBlockLayoutRequests) {
 				// If we are in a layout traversal, defer notification
@@ -1016,6 +1146,78 @@ public abstract class FriendAdapterView<T extends Adapter> extends AdapterView<T
 		requestLayout();
 	}
 
+	/**
+	 * Replaces the adapter like {@link #setAdapter(Adapter)}, but the attached children can
+	 * be handed to the new adapter as convert views instead of being thrown away, so
+	 * rebinding the list to a new model costs only binds.
+	 *
+	 * @param adapter    The new adapter
+	 * @param keepViews  Pool the attached children by view type if the new adapter is
+	 *                   compatible, see {@link #isViewTypeCompatible(Adapter, Adapter)}
+	 * @param keepScroll Keep the selected position (as far as the new adapter has items)
+	 *                   and its pixel offset instead of starting over at the first item
+	 */
+	public void swapAdapter (T adapter, boolean keepViews, boolean keepScroll) {
+		final T oldAdapter = mAdapter;
+		if (oldAdapter == null || adapter == null || adapter == oldAdapter) {
+			setAdapter( adapter );
+			return;
+		}
+
+		final int selectedPosition = mSelectedPosition;
+		final View selectedView = getSelectedView();
+		final int selectedLeft = selectedView != null ? selectedView.getLeft() : Integer.MIN_VALUE;
+
+		View[] children = null;
+		int[] viewTypes = null;
+		final int childCount = getChildCount();
+		if (keepViews && childCount > 0 && isViewTypeCompatible( oldAdapter, adapter )) {
+			children = new View[childCount];
+			viewTypes = new int[childCount];
+			for (int i = 0; i < childCount; i++) {
+				children[i] = getChildAt( i );
+				viewTypes[i] = getRecycledViewType( children[i], mFirstPosition + i );
+			}
+			detachAllViewsFromParent();
+			mChildEdges.clear();
+		}
+
+		setAdapter( adapter );
+
+		if (children != null) {
+			mRecycler.ensureScrapCapacity( childCount );
+			for (int i = 0; i < childCount; i++) {
+				mRecycler.addScrap( children[i], viewTypes[i] );
+			}
+		}
+
+		if (keepScroll && selectedPosition >= 0 && mItemCount > 0) {
+			final int position = Math.min( selectedPosition, mItemCount - 1 );
+			setSelectedPositionInt( position );
+			setNextSelectedPositionInt( position );
+			mSpecificLeft = selectedLeft;
+		}
+	}
+
+	/**
+	 * Replaces the adapter keeping the attached children as convert views, but not the
+	 * scroll position.
+	 *
+	 * @see #swapAdapter(Adapter, boolean, boolean)
+	 */
+	public void swapAdapter (T adapter, boolean keepViews) {
+		swapAdapter( adapter, keepViews, false );
+	}
+
+	/**
+	 * Whether views made by one adapter can be converted by another. By default both have
+	 * to be of the same class and have the same number of view types.
+	 */
+	protected boolean isViewTypeCompatible (T oldAdapter, T newAdapter) {
+		return oldAdapter.getClass() == newAdapter.getClass()
+				&& oldAdapter.getViewTypeCount() == newAdapter.getViewTypeCount();
+	}
+
 	protected void checkSelectionChanged () {
 		if ((mSelectedPosition != mOldSelectedPosition) || (mSelectedRowId != mOldSelectedRowId)) {
 			selectionChanged();
@@ -1290,10 +1492,44 @@ public abstract class FriendAdapterView<T extends Adapter> extends AdapterView<T
 		return super.onKeyUp( keyCode, event );
 	}
 
+	/**
+	 * Returns the view type a detached view can be reused for, or
+	 * {@link #ITEM_VIEW_TYPE_IGNORE} to throw it away.
+	 *
+	 * @param view     Detached view
+	 * @param position Position the view was showing
+	 */
+	protected int getRecycledViewType (View view, int position) {
+		if (mDataChanged || mAdapter == null || position < 0 || position >= mAdapter.getCount()) {
+			return ITEM_VIEW_TYPE_IGNORE;
+		}
+		return mAdapter.getItemViewType( position );
+	}
+
+	/**
+	 * Holds detached views. Views are first kept by position, so a layout can put back the
+	 * same view for the same item, and whatever is not claimed that way is moved to a pool
+	 * of views by type to be passed to the adapter as convert views.
+	 */
 	protected class RecycleBin {
 
+		/**
+		 * Fewest scrap views kept per type, more are kept if that many children are attached.
+		 */
+		private static final int MIN_SCRAP_PER_TYPE = 8;
+
 		private final SparseArray<View> mScrapHeap = new SparseArray<View>();
 
+		/**
+		 * Views by type, to be handed out as convert views.
+		 */
+		private final SparseArray<ArrayList<View>> mScrapViews = new SparseArray<ArrayList<View>>();
+
+		/**
+		 * Most views kept per type on top of the attached child count.
+		 */
+		private int mScrapCapacity = MIN_SCRAP_PER_TYPE;
+
 		public void put (int position, View v) {
 			mScrapHeap.put( position, v );
 		}
@@ -1311,17 +1547,247 @@ public abstract class FriendAdapterView<T extends Adapter> extends AdapterView<T
 			return result;
 		}
 
+		/**
+		 * Moves the views that were not claimed by position to the pool by type.
+		 */
 		public void clear () {
 			final SparseArray<View> scrapHeap = mScrapHeap;
 			final int count = scrapHeap.size();
 			for (int i = 0; i < count; i++) {
 				final View view = scrapHeap.valueAt( i );
 				if (view != null) {
-					removeDetachedView( view, true );
+					addScrap( view, getRecycledViewType( view, scrapHeap.keyAt( i ) ) );
 				}
 			}
 			scrapHeap.clear();
 		}
+
+		/**
+		 * Pool a detached view for reuse with the given type, or throw it away if the type is
+		 * negative or the pool is full.
+		 */
+		public void addScrap (View view, int viewType) {
+			// Pooled views are fully removed, so they can be added again as new
+			removeDetachedView( view, true );
+			if (viewType < 0) return;
+
+			ArrayList<View> scrap = mScrapViews.get( viewType );
+			if (scrap == null) {
+				scrap = new ArrayList<View>();
+				mScrapViews.put( viewType, scrap );
+			}
+			if (scrap.size() < Math.max( mScrapCapacity, getChildCount() )) {
+				scrap.add( view );
+			}
+		}
+
+		/**
+		 * Keep at least the given number of views per type, e.g. to pool all children at once.
+		 */
+		public void ensureScrapCapacity (int perType) {
+			mScrapCapacity = Math.max( mScrapCapacity, perType );
+		}
+
+		/**
+		 * Drops the pools of view types the adapter no longer has and shrinks the others back
+		 * to what the attached children need, e.g. after a swap to an adapter with fewer types
+		 * or a layout with fewer children.
+		 */
+		public void trimScrap (int viewTypeCount) {
+			mScrapCapacity = Math.max( MIN_SCRAP_PER_TYPE, getChildCount() );
+			for (int t = mScrapViews.size() - 1; t >= 0; t--) {
+				if (mScrapViews.keyAt( t ) >= viewTypeCount) {
+					mScrapViews.removeAt( t );
+					continue;
+				}
+				final ArrayList<View> scrap = mScrapViews.valueAt( t );
+				for (int i = scrap.size() - 1; i >= mScrapCapacity; i--) {
+					scrap.remove( i );
+				}
+			}
+		}
+
+		/**
+		 * @return A pooled view of the given type to pass as a convert view, or null.
+		 */
+		public View getScrap (int viewType) {
+			if (viewType < 0) return null;
+			final ArrayList<View> scrap = mScrapViews.get( viewType );
+			if (scrap == null || scrap.isEmpty()) return null;
+			return scrap.remove( scrap.size() - 1 );
+		}
+
+		/**
+		 * Throws away all pooled views, e.g. when the adapter changes.
+		 */
+		public void clearScrap () {
+			for (int t = mScrapViews.size() - 1; t >= 0; t--) {
+				mScrapViews.valueAt( t ).clear();
+			}
+		}
+	}
+
+	/**
+	 * Left and right edges of the attached children kept in child index order, so that hit
+	 * testing and center lookups can binary search instead of walking every child.
+	 * <p/>
+	 * Entries live in the middle of the backing arrays so that children can be added on either
+	 * end without shifting, and a common offset is kept aside so that scrolling all children
+	 * is a single addition.
+	 */
+	protected static class ChildEdges {
+
+		private int[] mLefts = new int[16];
+		private int[] mRights = new int[16];
+
+		/** Index in the backing arrays of the first child. */
+		private int mStart = 8;
+
+		/** Number of children cached. */
+		private int mSize;
+
+		/** Offset applied to every stored edge. */
+		private int mOffset;
+
+		public int size () {
+			return mSize;
+		}
+
+		public void clear () {
+			mStart = mLefts.length / 2;
+			mSize = 0;
+			mOffset = 0;
+		}
+
+		public int getLeft (int index) {
+			return mLefts[mStart + index] + mOffset;
+		}
+
+		public int getRight (int index) {
+			return mRights[mStart + index] + mOffset;
+		}
+
+		/**
+		 * Insert the edges of a child added at the given child index.
+		 */
+		public void add (int index, int left, int right) {
+			if (index == 0 && mStart > 0) {
+				mStart--;
+			}
+			else if (index == mSize && mStart + mSize < mLefts.length) {
+				// room at the end
+			}
+			else {
+				makeRoom( index );
+			}
+			mLefts[mStart + index] = left - mOffset;
+			mRights[mStart + index] = right - mOffset;
+			mSize++;
+		}
+
+		/**
+		 * Re-centers (and grows if needed) the entries leaving a hole at <code>index</code>.
+		 */
+		private void makeRoom (int index) {
+			final int size = mSize + 1;
+			int capacity = mLefts.length;
+			if (size * 2 > capacity) {
+				capacity = size * 2;
+			}
+			final int[] lefts = new int[capacity];
+			final int[] rights = new int[capacity];
+			final int start = (capacity - size) / 2;
+			System.arraycopy( mLefts, mStart, lefts, start, index );
+			System.arraycopy( mRights, mStart, rights, start, index );
+			System.arraycopy( mLefts, mStart + index, lefts, start + index + 1, mSize - index );
+			System.arraycopy( mRights, mStart + index, rights, start + index + 1, mSize - index );
+			mLefts = lefts;
+			mRights = rights;
+			mStart = start;
+		}
+
+		/**
+		 * Remove <code>count</code> children starting at child index <code>start</code>.
+		 */
+		public void remove (int start, int count) {
+			if (count <= 0) return;
+			if (start == 0) {
+				mStart += count;
+			}
+			else {
+				final int tail = mSize - start - count;
+				System.arraycopy( mLefts, mStart + start + count, mLefts, mStart + start, tail );
+				System.arraycopy( mRights, mStart + start + count, mRights, mStart + start, tail );
+			}
+			mSize -= count;
+			if (mSize == 0) clear();
+		}
+
+		/**
+		 * Offset all children by <code>dx</code> pixels.
+		 */
+		public void offset (int dx) {
+			mOffset += dx;
+		}
+
+		/**
+		 * Replace the edges of the child at the given child index.
+		 */
+		public void set (int index, int left, int right) {
+			mLefts[mStart + index] = left - mOffset;
+			mRights[mStart + index] = right - mOffset;
+		}
+
+		/**
+		 * Offset the children from child index <code>start</code> (inclusive) to
+		 * <code>end</code> (exclusive) by <code>dx</code> pixels.
+		 */
+		public void offset (int start, int end, int dx) {
+			for (int i = mStart + start; i < mStart + end; i++) {
+				mLefts[i] += dx;
+				mRights[i] += dx;
+			}
+		}
+
+		/**
+		 * @return index of the last child whose left edge is at or before <code>x</code>, or -1.
+		 */
+		private int floor (int x) {
+			final int[] lefts = mLefts;
+			final int raw = x - mOffset;
+			int lo = mStart, hi = mStart + mSize - 1;
+			while (lo <= hi) {
+				final int mid = (lo + hi) >>> 1;
+				if (lefts[mid] <= raw)
+					lo = mid + 1;
+				else
+					hi = mid - 1;
+			}
+			return hi - mStart;
+		}
+
+		/**
+		 * @return index of the child whose horizontal span contains <code>x</code>, or -1.
+		 */
+		public int indexAt (int x) {
+			final int i = floor( x );
+			return i >= 0 && x < getRight( i ) ? i : -1;
+		}
+
+		/**
+		 * @return index of the child containing <code>x</code>, otherwise the child with the
+		 *         closest edge to <code>x</code>, or -1 if nothing is cached.
+		 */
+		public int indexClosestTo (int x) {
+			if (mSize == 0) return -1;
+
+			final int i = floor( x );
+			if (i >= 0 && x <= getRight( i )) return i;
+			if (i < 0) return 0;
+			if (i == mSize - 1) return i;
+
+			return getLeft( i + 1 ) - x <= x - getRight( i ) ? i + 1 : i;
+		}
 	}
 
 	protected static class SavedState extends BaseSavedState {
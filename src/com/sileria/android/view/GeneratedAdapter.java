@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+/**
+ * Holder adapter without backing storage: every item is computed from its
+ * position by a {@link Generator}, so the count can go up to
+ * {@link Integer#MAX_VALUE} with constant memory. Computed items are kept in a
+ * small direct mapped cache, slot <code>position % cacheSize</code>, so
+ * rebinding the visible items neither computes them again nor allocates.
+ *
+ * @param <E>
+ *            Item type
+ * @param <VH>
+ *            Holder type
+ * @since API 8
+ */
+public abstract class GeneratedAdapter<E, VH extends HorzListView.ViewHolder>
+		extends HolderAdapter<VH> {
+
+	/**
+	 * Computes an item from its position. Must always return the same item for
+	 * the same position.
+	 */
+	public interface Generator<E> {
+		E generate(int position);
+	}
+
+	private final Generator<E> mGenerator;
+
+	/**
+	 * Position held by each cache slot, -1 if empty.
+	 */
+	private final int[] mCachedPositions;
+	private final Object[] mCachedItems;
+
+	private int mCount;
+
+	/**
+	 * @param generator
+	 *            Computes the items
+	 * @param count
+	 *            Number of items, up to {@link Integer#MAX_VALUE}
+	 * @param cacheSize
+	 *            Computed items to remember, more than fit on a screen
+	 */
+	public GeneratedAdapter(Generator<E> generator, int count, int cacheSize) {
+		if (count < 0 || cacheSize <= 0)
+			throw new IllegalArgumentException("count < 0 or cacheSize <= 0");
+		mGenerator = generator;
+		mCount = count;
+		mCachedPositions = new int[cacheSize];
+		mCachedItems = new Object[cacheSize];
+		clearCache();
+	}
+
+	/**
+	 * Bind a computed item.
+	 */
+	public abstract void onBindItem(VH holder, E item, int position);
+
+	@Override
+	public final void onBindHolder(VH holder, int position) {
+		onBindItem(holder, getItem(position), position);
+	}
+
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * Changes the number of items, notified as items inserted or removed at
+	 * the end.
+	 */
+	public void setCount(int count) {
+		if (count < 0)
+			throw new IllegalArgumentException("count < 0");
+		final int oldCount = mCount;
+		mCount = count;
+		if (count > oldCount) {
+			notifyItemRangeInserted(oldCount, count - oldCount);
+		} else if (count < oldCount) {
+			clearCache();
+			notifyItemRangeRemoved(count, oldCount - count);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	public E getItem(int position) {
+		final int slot = position % mCachedPositions.length;
+		if (mCachedPositions[slot] != position) {
+			// Also remembers null items
+			mCachedItems[slot] = mGenerator.generate(position);
+			mCachedPositions[slot] = position;
+		}
+		return (E) mCachedItems[slot];
+	}
+
+	public long getItemId(int position) {
+		return position;
+	}
+
+	/**
+	 * Items depend only on their position.
+	 */
+	@Override
+	public boolean hasStableIds() {
+		return true;
+	}
+
+	/**
+	 * Drops the computed items, e.g. when the generator's output changed.
+	 * Call {@link #notifyDataSetChanged()} to rebind.
+	 */
+	public void clearCache() {
+		java.util.Arrays.fill(mCachedPositions, -1);
+		java.util.Arrays.fill(mCachedItems, null);
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.database.DataSetObserver;
+import android.view.View;
+import android.widget.BaseAdapter;
+
+/**
+ * A {@link BaseAdapter} that can report changes to single items instead of
+ * the whole data set. {@link HorzListView} then rebinds only the attached
+ * children of those items, other observers get a plain
+ * {@link DataSetObserver#onChanged()}.
+ *
+ * @since API 8
+ */
+public abstract class GranularAdapter extends BaseAdapter {
+
+	/**
+	 * All registered observers, kept aside since the ones of BaseAdapter are
+	 * private.
+	 */
+	private final ArrayList<DataSetObserver> mObservers = new ArrayList<DataSetObserver>();
+
+	@Override
+	public void registerDataSetObserver(DataSetObserver observer) {
+		super.registerDataSetObserver(observer);
+		mObservers.add(observer);
+	}
+
+	@Override
+	public void unregisterDataSetObserver(DataSetObserver observer) {
+		super.unregisterDataSetObserver(observer);
+		mObservers.remove(observer);
+	}
+
+	/**
+	 * Notify that one item changed.
+	 *
+	 * @param position
+	 *            Position of the item
+	 * @param payload
+	 *            Optional hint of what changed, passed back to
+	 *            {@link #onBindPayloads(int, View, List)}, or null to rebind it
+	 *            fully.
+	 */
+	public void notifyItemChanged(int position, Object payload) {
+		notifyItemRangeChanged(position, 1, payload);
+	}
+
+	/**
+	 * Notify that a range of items changed.
+	 *
+	 * @see #notifyItemChanged(int, Object)
+	 */
+	public void notifyItemRangeChanged(int positionStart, int itemCount,
+			Object payload) {
+		for (int i = mObservers.size() - 1; i >= 0; i--) {
+			final DataSetObserver observer = mObservers.get(i);
+			if (observer instanceof ItemChangeObserver)
+				((ItemChangeObserver) observer).onItemRangeChanged(
+						positionStart, itemCount, payload);
+			else
+				observer.onChanged();
+		}
+	}
+
+	/**
+	 * Notify that items were inserted. The data must already contain them.
+	 */
+	public void notifyItemRangeInserted(int positionStart, int itemCount) {
+		for (int i = mObservers.size() - 1; i >= 0; i--) {
+			final DataSetObserver observer = mObservers.get(i);
+			if (observer instanceof ItemChangeObserver)
+				((ItemChangeObserver) observer).onItemRangeInserted(
+						positionStart, itemCount);
+			else
+				observer.onChanged();
+		}
+	}
+
+	/**
+	 * Notify that items were removed. The data must already be without them.
+	 */
+	public void notifyItemRangeRemoved(int positionStart, int itemCount) {
+		for (int i = mObservers.size() - 1; i >= 0; i--) {
+			final DataSetObserver observer = mObservers.get(i);
+			if (observer instanceof ItemChangeObserver)
+				((ItemChangeObserver) observer).onItemRangeRemoved(
+						positionStart, itemCount);
+			else
+				observer.onChanged();
+		}
+	}
+
+	/**
+	 * Update an attached view for changes notified with payloads, so only the
+	 * affected fields are touched. All payloads notified for the item since it
+	 * was last bound are delivered at once, in notification order. The default
+	 * does nothing and returns false, which rebinds the view through
+	 * {@link #getView(int, View, android.view.ViewGroup)}.
+	 *
+	 * @param position
+	 *            Position of the item
+	 * @param view
+	 *            The view currently showing the item
+	 * @param payloads
+	 *            What changed, never empty. Only valid during the call.
+	 * @return true if the view was updated
+	 */
+	public boolean onBindPayloads(int position, View view, List<Object> payloads) {
+		return false;
+	}
+}
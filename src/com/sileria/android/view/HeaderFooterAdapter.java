@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.database.DataSetObserver;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.ListAdapter;
+import android.widget.WrapperListAdapter;
+
+/**
+ * Adapter {@link HorzListView} puts in front of the user's adapter when it has
+ * header or footer views. Those views come before and after the wrapped
+ * items, have the {@link AdapterView#ITEM_VIEW_TYPE_HEADER_OR_FOOTER} type so
+ * they are never pooled or handed to the wrapped adapter, and are returned as
+ * they are without binding. Changes of the wrapped adapter, including granular
+ * ones, are passed on with their positions shifted by the header count.
+ *
+ * @see HorzListView#addHeaderView(View)
+ * @see HorzListView#addFooterView(View)
+ * @since API 8
+ */
+public class HeaderFooterAdapter extends GranularAdapter implements
+		WrapperListAdapter, PrefetchingAdapter {
+
+	private final ListAdapter mAdapter;
+	private final ArrayList<View> mHeaders;
+	private final ArrayList<View> mFooters;
+
+	/**
+	 * Registered with the wrapped adapter while someone observes this one.
+	 */
+	private final ItemChangeObserver mObserver = new ItemChangeObserver() {
+		@Override
+		public void onChanged() {
+			notifyDataSetChanged();
+		}
+
+		@Override
+		public void onInvalidated() {
+			notifyDataSetInvalidated();
+		}
+
+		@Override
+		public void onItemRangeChanged(int positionStart, int itemCount,
+				Object payload) {
+			notifyItemRangeChanged(positionStart + mHeaders.size(),
+					itemCount, payload);
+		}
+
+		@Override
+		public void onItemRangeInserted(int positionStart, int itemCount) {
+			notifyItemRangeInserted(positionStart + mHeaders.size(), itemCount);
+		}
+
+		@Override
+		public void onItemRangeRemoved(int positionStart, int itemCount) {
+			notifyItemRangeRemoved(positionStart + mHeaders.size(), itemCount);
+		}
+	};
+
+	private int mObserverCount;
+
+	/**
+	 * @param adapter
+	 *            Adapter of the items
+	 * @param headers
+	 *            Header views, the list is shared with the owner
+	 * @param footers
+	 *            Footer views, the list is shared with the owner
+	 */
+	HeaderFooterAdapter(ListAdapter adapter, ArrayList<View> headers,
+			ArrayList<View> footers) {
+		mAdapter = adapter;
+		mHeaders = headers;
+		mFooters = footers;
+	}
+
+	public ListAdapter getWrappedAdapter() {
+		return mAdapter;
+	}
+
+	public int getHeadersCount() {
+		return mHeaders.size();
+	}
+
+	public int getFootersCount() {
+		return mFooters.size();
+	}
+
+	@Override
+	public void registerDataSetObserver(DataSetObserver observer) {
+		super.registerDataSetObserver(observer);
+		if (mObserverCount++ == 0)
+			mAdapter.registerDataSetObserver(mObserver);
+	}
+
+	@Override
+	public void unregisterDataSetObserver(DataSetObserver observer) {
+		super.unregisterDataSetObserver(observer);
+		if (--mObserverCount == 0)
+			mAdapter.unregisterDataSetObserver(mObserver);
+	}
+
+	public int getCount() {
+		return mHeaders.size() + mAdapter.getCount() + mFooters.size();
+	}
+
+	/**
+	 * Fixed views count as items, so the list is not replaced by its empty
+	 * view while it has some.
+	 */
+	@Override
+	public boolean isEmpty() {
+		return getCount() == 0;
+	}
+
+	@Override
+	public boolean areAllItemsEnabled() {
+		return mHeaders.isEmpty() && mFooters.isEmpty()
+				&& mAdapter.areAllItemsEnabled();
+	}
+
+	@Override
+	public boolean isEnabled(int position) {
+		final int adjusted = position - mHeaders.size();
+		return adjusted >= 0 && adjusted < mAdapter.getCount()
+				&& mAdapter.isEnabled(adjusted);
+	}
+
+	public Object getItem(int position) {
+		final int adjusted = position - mHeaders.size();
+		if (adjusted >= 0 && adjusted < mAdapter.getCount())
+			return mAdapter.getItem(adjusted);
+		return null;
+	}
+
+	public long getItemId(int position) {
+		final int adjusted = position - mHeaders.size();
+		if (adjusted >= 0 && adjusted < mAdapter.getCount())
+			return mAdapter.getItemId(adjusted);
+		return AdapterView.INVALID_ROW_ID;
+	}
+
+	@Override
+	public boolean hasStableIds() {
+		return mAdapter.hasStableIds();
+	}
+
+	@Override
+	public int getItemViewType(int position) {
+		final int adjusted = position - mHeaders.size();
+		if (adjusted >= 0 && adjusted < mAdapter.getCount())
+			return mAdapter.getItemViewType(adjusted);
+		return AdapterView.ITEM_VIEW_TYPE_HEADER_OR_FOOTER;
+	}
+
+	@Override
+	public int getViewTypeCount() {
+		return mAdapter.getViewTypeCount();
+	}
+
+	public View getView(int position, View convertView, ViewGroup parent) {
+		final int headers = mHeaders.size();
+		if (position < headers)
+			return mHeaders.get(position);
+
+		final int adjusted = position - headers;
+		final int count = mAdapter.getCount();
+		if (adjusted < count)
+			return mAdapter.getView(adjusted, convertView, parent);
+
+		return mFooters.get(adjusted - count);
+	}
+
+	public void prefetch(int fromPosition, int toPosition, int firstVisible,
+			int lastVisible) {
+		if (mAdapter instanceof PrefetchingAdapter) {
+			final int headers = mHeaders.size();
+			final int last = mAdapter.getCount() - 1;
+			final int from = Math.max(0, fromPosition - headers);
+			final int to = Math.min(last, toPosition - headers);
+			if (from <= to)
+				((PrefetchingAdapter) mAdapter).prefetch(from, to,
+						Math.max(0, firstVisible - headers),
+						Math.min(last, lastVisible - headers));
+		}
+	}
+
+	public void cancelPrefetch() {
+		if (mAdapter instanceof PrefetchingAdapter)
+			((PrefetchingAdapter) mAdapter).cancelPrefetch();
+	}
+
+	@Override
+	public boolean onBindPayloads(int position, View view, List<Object> payloads) {
+		final int adjusted = position - mHeaders.size();
+		if (adjusted < 0 || adjusted >= mAdapter.getCount())
+			return true; // Fixed views have nothing to bind
+
+		return mAdapter instanceof GranularAdapter
+				&& ((GranularAdapter) mAdapter).onBindPayloads(adjusted, view,
+						payloads);
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.util.List;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Adapter built around {@link HorzListView.ViewHolder}s. Subclasses create a
+ * holder per view type and bind it to a position, the adapter takes care of
+ * keeping the holder in the {@link HorzListView.LayoutParams} of its view and
+ * of recording the position, id and view type it is bound to.
+ *
+ * @param <VH>
+ *            Holder type
+ * @since API 8
+ */
+public abstract class HolderAdapter<VH extends HorzListView.ViewHolder> extends
+		GranularAdapter {
+
+	/**
+	 * Create a holder and its view for the given type. The view is not bound
+	 * yet.
+	 *
+	 * @param parent
+	 *            The list the view will be added to, to inflate against.
+	 * @param viewType
+	 *            View type as returned by {@link #getItemViewType(int)}
+	 */
+	public abstract VH onCreateHolder(ViewGroup parent, int viewType);
+
+	/**
+	 * Bind a holder to the item at the given position.
+	 */
+	public abstract void onBindHolder(VH holder, int position);
+
+	/**
+	 * Update only the fields of a bound holder named by the payloads, see
+	 * {@link GranularAdapter#onBindPayloads(int, View, List)}. The default
+	 * returns false, which rebinds it fully with
+	 * {@link #onBindHolder(HorzListView.ViewHolder, int)}.
+	 *
+	 * @return true if the holder was updated
+	 */
+	public boolean onBindHolder(VH holder, int position, List<Object> payloads) {
+		return false;
+	}
+
+	public final View getView(int position, View convertView, ViewGroup parent) {
+		final int viewType = getItemViewType(position);
+
+		VH holder = convertView != null ? holderOf(convertView) : null;
+		if (holder == null || holder.mViewType != viewType) {
+			holder = onCreateHolder(parent, viewType);
+			attach(holder);
+		}
+
+		bind(holder, position, viewType);
+		onBindHolder(holder, position);
+		return holder.itemView;
+	}
+
+	@Override
+	public boolean onBindPayloads(int position, View view, List<Object> payloads) {
+		final VH holder = holderOf(view);
+		if (holder == null)
+			return false;
+
+		final int viewType = getItemViewType(position);
+		if (holder.mViewType != viewType)
+			return false;
+
+		bind(holder, position, viewType);
+		return onBindHolder(holder, position, payloads);
+	}
+
+	/**
+	 * @return The holder of a view created by this adapter, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	protected VH holderOf(View view) {
+		return (VH) HorzListView.getChildViewHolder(view);
+	}
+
+	private void attach(VH holder) {
+		final View view = holder.itemView;
+		final ViewGroup.LayoutParams p = view.getLayoutParams();
+
+		HorzListView.LayoutParams lp;
+		if (p instanceof HorzListView.LayoutParams) {
+			lp = (HorzListView.LayoutParams) p;
+		} else {
+			lp = p == null ? new HorzListView.LayoutParams(
+					ViewGroup.LayoutParams.WRAP_CONTENT,
+					ViewGroup.LayoutParams.WRAP_CONTENT)
+					: new HorzListView.LayoutParams(p);
+			view.setLayoutParams(lp);
+		}
+		lp.holder = holder;
+	}
+
+	private void bind(VH holder, int position, int viewType) {
+		holder.mPosition = position;
+		holder.mItemId = getItemId(position);
+		holder.mViewType = viewType;
+	}
+}
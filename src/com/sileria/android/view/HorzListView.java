@@ -19,9 +19,10 @@ package com.sileria.android.view;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Rect;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.util.SparseArray;
 import android.view.ContextMenu;
-import android.view.GestureDetector;
 import android.view.Gravity;
 import android.view.HapticFeedbackConstants;
 import android.view.KeyEvent;
@@ -30,9 +31,13 @@ import android.view.SoundEffectConstants;
 import android.view.View;
 import android.view.ViewDebug;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.animation.DecelerateInterpolator;
 import android.widget.ListAdapter;
 import android.widget.Scroller;
 
+import java.util.ArrayList;
+
 /**
  * Finally a mixture of Gallery and a ListView that actually works like a
  * horizontal list view, and thank God without being "center-locked". As usual
@@ -49,7 +54,7 @@ import android.widget.Scroller;
  *       bugs)
  */
 public class HorzListView extends FriendAdapterView<ListAdapter> implements
-		GestureDetector.OnGestureListener {
+		TouchTracker.Callback, ScrollResampler.Target {
 
 	private int mHeightMeasureSpec;
 	private int mWidthMeasureSpec;
@@ -64,6 +69,23 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 	 */
 	private static final int SCROLL_TO_FLING_UNCERTAINTY_TIMEOUT = 250;
 
+	/**
+	 * While a navigation key is held, every this many repeats the selection
+	 * moves one item further per repeat.
+	 */
+	private static final int KEY_REPEAT_ACCELERATION = 4;
+
+	/**
+	 * Most items the selection moves per key repeat.
+	 */
+	private static final int KEY_REPEAT_MAX_STEP = 8;
+
+	/**
+	 * Animations started again when a key animation ends short of its target,
+	 * before jumping to it.
+	 */
+	private static final int MAX_KEY_SCROLL_RETRIES = 2;
+
 	/**
 	 * Horizontal spacing between items.
 	 */
@@ -97,9 +119,15 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 	private int mGravity;
 
 	/**
-	 * Helper for detecting touch gestures.
+	 * Helper for detecting drags, taps and flings, both over the children and
+	 * over this view.
+	 */
+	private TouchTracker mTouchTracker;
+
+	/**
+	 * Batches the drag samples of a frame into a single scroll.
 	 */
-	private GestureDetector mGestureDetector;
+	private ScrollResampler mScrollResampler;
 
 	/**
 	 * The position of the item that received the user's down touch.
@@ -153,33 +181,181 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 
 	private AdapterContextMenuInfo mContextMenuInfo;
 
+	/**
+	 * Speed of the last scroll step in pixels per second and when it happened,
+	 * -1 if the list was at rest since.
+	 */
+	private float mMotionVelocity;
+	private long mLastMotionTime = -1;
+
 	/**
 	 * If true, this onScroll is the first for this user's drag (remember, a
 	 * drag sends many onScrolls).
 	 */
 	private boolean mIsFirstScroll;
 
+	/**
+	 * True while animating to a selection made with the keys, so the target
+	 * can be brought fully on screen once the animation ends.
+	 */
+	private boolean mKeyScrolling;
+
+	/**
+	 * Animations restarted so far for the current key animation.
+	 */
+	private int mKeyScrollRetries;
+
 	/**
 	 * If true, mFirstPosition is the position of the rightmost child, and the
 	 * children are ordered right to left.
 	 */
 	private boolean mIsRtl = true;
 
-	// ===============================================================================
-	// Gallery-Buttons-scroll patch
-	// Constants
-	protected static final float DRAG_THRESHOLD = 10; // If dragging for more
-														// than this amount of
-														// pixels, means it's a
-														// scroll
+	/**
+	 * Interface definition for a callback to be invoked when the list is
+	 * scrolled, e.g. to pause expensive work while the user flings.
+	 */
+	public interface OnScrollListener {
+
+		/**
+		 * The view is not scrolling.
+		 */
+		public static final int SCROLL_STATE_IDLE = 0;
+
+		/**
+		 * The user is scrolling using touch, and their finger is still on the
+		 * screen.
+		 */
+		public static final int SCROLL_STATE_TOUCH_SCROLL = 1;
+
+		/**
+		 * The list is moving on its own, after a fling or while animating to
+		 * a selection.
+		 */
+		public static final int SCROLL_STATE_FLING = 2;
+
+		/**
+		 * Callback method to be invoked when the scroll state changes.
+		 * 
+		 * @param view
+		 *            The view whose scroll state is being reported
+		 * @param scrollState
+		 *            One of the SCROLL_STATE_* constants.
+		 */
+		public void onScrollStateChanged(HorzListView view, int scrollState);
+
+		/**
+		 * Callback method to be invoked for every scroll step.
+		 * 
+		 * @param view
+		 *            The view being scrolled
+		 * @param dx
+		 *            Pixels the children moved, positive to the right.
+		 */
+		public void onScrolled(HorzListView view, int dx);
+	}
+
+	private OnScrollListener mOnScrollListener;
+
+	/**
+	 * Interface definition for callbacks about which items are on screen.
+	 * Calls are batched and posted, never made from inside a scroll step.
+	 */
+	public interface OnVisibilityListener {
+
+		/**
+		 * The range of attached (at least partially visible) items changed.
+		 * 
+		 * @param view
+		 *            The list
+		 * @param firstPosition
+		 *            Position of the first visible item
+		 * @param lastPosition
+		 *            Position of the last visible item
+		 */
+		public void onVisibleRangeChanged(HorzListView view, int firstPosition,
+				int lastPosition);
+
+		/**
+		 * Items stayed over the visibility threshold long enough. Each item
+		 * is reported once each time it comes on screen.
+		 * 
+		 * @param view
+		 *            The list
+		 * @param positions
+		 *            Positions of the items, the array is reused, only read
+		 *            the first <code>count</code> entries and do not keep it.
+		 * @param count
+		 *            Number of positions
+		 */
+		public void onImpressions(HorzListView view, int[] positions, int count);
+	}
+
+	/**
+	 * Tracks visible range and impressions, null unless a visibility listener
+	 * is set.
+	 */
+	private ImpressionTracker mImpressionTracker;
+
+	/**
+	 * Item changes waiting to be bound on the next frame.
+	 */
+	private final PayloadBatch mPayloadBatch = new PayloadBatch();
+
+	/**
+	 * Lays out the children that requested it right before the next draw,
+	 * see {@link #requestLayout()}.
+	 */
+	private final ViewTreeObserver.OnPreDrawListener mChildLayoutListener = new ViewTreeObserver.OnPreDrawListener() {
+		public boolean onPreDraw() {
+			removeChildLayoutListener();
+			// Skip this frame if a full layout is needed after all
+			return relayoutChildren();
+		}
+	};
+
+	/**
+	 * Tree observer {@link #mChildLayoutListener} is registered with, or null.
+	 */
+	private ViewTreeObserver mChildLayoutObserver;
+
+	/**
+	 * Adapter at the time the list was detached from its window.
+	 */
+	private ListAdapter mDetachedAdapter;
+
+	/**
+	 * Fewest items prefetched ahead of the children.
+	 */
+	private static final int MIN_PREFETCH_ITEMS = 4;
+
+	/**
+	 * Largest smooth scrollbar range, with room left for overscroll.
+	 */
+	private static final int MAX_SCROLLBAR_RANGE = Integer.MAX_VALUE / 2;
+
+	/**
+	 * Range last handed to a {@link PrefetchingAdapter} and the direction it
+	 * was for.
+	 */
+	private int mPrefetchFrom = INVALID_POSITION;
+	private int mPrefetchTo = INVALID_POSITION;
+	private boolean mPrefetchToLeft = true;
+
+	private final ArrayList<View> mHeaderViews = new ArrayList<View>();
+	private final ArrayList<View> mFooterViews = new ArrayList<View>();
 
-	// Properties
-	protected boolean isPressed;
-	protected float startPressX;
-	protected float startPressY;
-	protected boolean isDragging;
+	/**
+	 * The list was reattached without changes, the next measure and layout
+	 * can keep the children as they are.
+	 */
+	private boolean mReattached;
 
-	// ===============================================================================-----
+	/**
+	 * Current scroll state, one of the OnScrollListener.SCROLL_STATE_*
+	 * constants.
+	 */
+	private int mScrollState = OnScrollListener.SCROLL_STATE_IDLE;
 
 	/**
 	 * Constructor, default.
@@ -212,8 +388,9 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 
 		// setSelector( getResources().getDrawable(
 		// android.R.drawable.list_selector_background ) );
-		mGestureDetector = new GestureDetector(context, this);
-		mGestureDetector.setIsLongpressEnabled(true);
+		mTouchTracker = new TouchTracker(this, this);
+		mTouchTracker.setLongPressEnabled(true);
+		mScrollResampler = new ScrollResampler(this, this);
 
 		// We draw the selected item last (because otherwise the item to the
 		// right overlaps it)
@@ -249,6 +426,160 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		mShouldCallbackOnUnselectedItemClick = shouldCallback;
 	}
 
+	/**
+	 * Sets the adapter, behind a {@link HeaderFooterAdapter} if there are
+	 * header or footer views.
+	 */
+	@Override
+	public void setAdapter(ListAdapter adapter) {
+		if (adapter instanceof HeaderFooterAdapter)
+			adapter = ((HeaderFooterAdapter) adapter).getWrappedAdapter();
+
+		if (adapter != null
+				&& (!mHeaderViews.isEmpty() || !mFooterViews.isEmpty()))
+			adapter = new HeaderFooterAdapter(adapter, mHeaderViews,
+					mFooterViews);
+		super.setAdapter(adapter);
+	}
+
+	@Override
+	protected boolean isViewTypeCompatible(ListAdapter oldAdapter,
+			ListAdapter newAdapter) {
+		oldAdapter = unwrap(oldAdapter);
+		newAdapter = unwrap(newAdapter);
+		if (oldAdapter instanceof ConcatListAdapter
+				&& newAdapter instanceof ConcatListAdapter)
+			return ((ConcatListAdapter) oldAdapter)
+					.isCompatibleWith((ConcatListAdapter) newAdapter);
+		return super.isViewTypeCompatible(oldAdapter, newAdapter);
+	}
+
+	private static ListAdapter unwrap(ListAdapter adapter) {
+		return adapter instanceof HeaderFooterAdapter ? ((HeaderFooterAdapter) adapter)
+				.getWrappedAdapter() : adapter;
+	}
+
+	/**
+	 * Adds a view before the first item. Header views are not part of the
+	 * adapter: they are never pooled or rebound, they only take a position in
+	 * front of the adapter's items.
+	 */
+	public void addHeaderView(View v) {
+		mHeaderViews.add(v);
+		fixedViewsChanged();
+	}
+
+	/**
+	 * Adds a view after the last item, see {@link #addHeaderView(View)}.
+	 */
+	public void addFooterView(View v) {
+		mFooterViews.add(v);
+		fixedViewsChanged();
+	}
+
+	/**
+	 * @return true if the view was a header view.
+	 */
+	public boolean removeHeaderView(View v) {
+		if (!mHeaderViews.remove(v))
+			return false;
+		fixedViewsChanged();
+		return true;
+	}
+
+	/**
+	 * @return true if the view was a footer view.
+	 */
+	public boolean removeFooterView(View v) {
+		if (!mFooterViews.remove(v))
+			return false;
+		fixedViewsChanged();
+		return true;
+	}
+
+	public int getHeaderViewsCount() {
+		return mHeaderViews.size();
+	}
+
+	public int getFooterViewsCount() {
+		return mFooterViews.size();
+	}
+
+	private void fixedViewsChanged() {
+		final ListAdapter adapter = mAdapter;
+		if (adapter == null)
+			return;
+
+		final boolean wrapped = adapter instanceof HeaderFooterAdapter;
+		if (wrapped == (!mHeaderViews.isEmpty() || !mFooterViews.isEmpty())) {
+			// The wrapper shares the view lists, only the count changed
+			if (wrapped)
+				((HeaderFooterAdapter) adapter).notifyDataSetChanged();
+		} else if (wrapped) {
+			swapAdapter(unwrap(adapter), true, true);
+		} else {
+			// Swap to a new wrapper, the adapter itself would be taken for
+			// the current one and the list reset
+			swapAdapter(new HeaderFooterAdapter(adapter, mHeaderViews,
+					mFooterViews), true, true);
+		}
+	}
+
+	/**
+	 * Set the listener that will receive notifications every time the list
+	 * scrolls.
+	 * 
+	 * @param l
+	 *            the scroll listener
+	 */
+	public void setOnScrollListener(OnScrollListener l) {
+		mOnScrollListener = l;
+	}
+
+	/**
+	 * Set the listener that will receive visible range changes and item
+	 * impressions.
+	 * 
+	 * @param l
+	 *            the visibility listener, or null to stop tracking
+	 * @param minVisibleFraction
+	 *            Part of an item's width that has to be on screen for it to
+	 *            count as seen, e.g. 0.5f.
+	 * @param minVisibleMillis
+	 *            How long the item has to stay that visible, e.g. 1000.
+	 */
+	public void setOnVisibilityListener(OnVisibilityListener l,
+			float minVisibleFraction, long minVisibleMillis) {
+		if (mImpressionTracker != null) {
+			mImpressionTracker.cancel();
+			mImpressionTracker = null;
+		}
+		if (l != null) {
+			mImpressionTracker = new ImpressionTracker(l, minVisibleFraction,
+					minVisibleMillis);
+			mImpressionTracker.update();
+		}
+	}
+
+	/**
+	 * @return The current scroll state, one of the
+	 *         OnScrollListener.SCROLL_STATE_* constants.
+	 */
+	public int getScrollState() {
+		return mScrollState;
+	}
+
+	/**
+	 * Fires an OnScrollListener.onScrollStateChanged() if the state changed.
+	 */
+	private void reportScrollStateChange(int newState) {
+		if (newState != mScrollState) {
+			mScrollState = newState;
+			if (mOnScrollListener != null)
+				mOnScrollListener.onScrollStateChanged(this, newState);
+		}
+	}
+
 	/**
 	 * Sets how long the transition animation should run when a child view
 	 * changes position. Only relevant if animation is turned on.
@@ -306,25 +637,36 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		return mSmoothScrollbarEnabled;
 	}
 
+	/**
+	 * Smooth scrollbar units per item. 100 unless the range of a very large
+	 * adapter would no longer fit in an int.
+	 */
+	private int getScrollbarUnitsPerItem() {
+		if (mItemCount <= MAX_SCROLLBAR_RANGE / 100)
+			return 100;
+		return Math.max(1, MAX_SCROLLBAR_RANGE / mItemCount);
+	}
+
 	@Override
 	protected int computeHorizontalScrollExtent() {
 		final int count = getChildCount();
 		if (count > 0) {
 			if (mSmoothScrollbarEnabled) {
-				int extent = count * 100;
+				final int units = getScrollbarUnitsPerItem();
+				int extent = count * units;
 
 				View view = getChildAt(0);
 				final int left = view.getLeft();
 				int width = view.getWidth();
 				if (width > 0) {
-					extent += (left * 100) / width;
+					extent += (left * units) / width;
 				}
 
 				view = getChildAt(count - 1);
 				final int rigth = view.getRight();
 				width = view.getWidth();
 				if (width > 0) {
-					extent -= ((rigth - getWidth()) * 100) / width;
+					extent -= ((rigth - getWidth()) * units) / width;
 				}
 
 				return extent;
@@ -344,12 +686,13 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 				final int left = view.getLeft();
 				int width = view.getWidth();
 				if (width > 0) {
+					final int units = getScrollbarUnitsPerItem();
 					return Math.max(firstPosition
-							* 100
-							- (left * 100)
+							* units
+							- (left * units)
 							/ width
 							+ (int) ((float) getScrollX() / getWidth()
-									* mItemCount * 100), 0);
+									* mItemCount * units), 0);
 				}
 			} else {
 				int index;
@@ -372,12 +715,14 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 	protected int computeHorizontalScrollRange() {
 		int result;
 		if (mSmoothScrollbarEnabled) {
-			result = Math.max(mItemCount * 100, 0);
+			final int units = getScrollbarUnitsPerItem();
+			long range = Math.max((long) mItemCount * units, 0);
 			if (getScrollX() != 0) {
 				// Compensate for overscroll
-				result += Math.abs((int) ((float) getScrollX() / getWidth()
-						* mItemCount * 100));
+				range += Math.abs((long) ((float) getScrollX() / getWidth()
+						* mItemCount * units));
 			}
+			result = (int) Math.min(range, Integer.MAX_VALUE);
 		} else {
 			result = mItemCount;
 		}
@@ -437,8 +782,24 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 			onFinishedMovement();
 		}
 
+		final long now = SystemClock.uptimeMillis();
+		if (mLastMotionTime < 0) {
+			// The time since the list came to rest says nothing about the
+			// speed, so the first step only counts as fast unless a fling
+			// gave its velocity
+			if (mMotionVelocity == 0)
+				mMotionVelocity = Float.MAX_VALUE;
+		} else if (now > mLastMotionTime) {
+			mMotionVelocity = Math.abs(limitedDeltaX) * 1000f
+					/ (now - mLastMotionTime);
+		}
+		mLastMotionTime = now;
+
 		offsetChildrenLeftAndRight(limitedDeltaX);
 
+		if (mOnScrollListener != null && limitedDeltaX != 0)
+			mOnScrollListener.onScrolled(this, limitedDeltaX);
+
 		detachOffScreenChildren(toLeft);
 
 		if (toLeft) {
@@ -452,6 +813,11 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		// Clear unused views
 		mRecycler.clear();
 
+		if (mImpressionTracker != null)
+			mImpressionTracker.update();
+
+		prefetchAhead(toLeft);
+
 		updateSelection();
 		updateSelector();
 
@@ -530,6 +896,236 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		invalidate();
 	}
 
+	/**
+	 * Scrolls the content by the given number of pixels without a layout
+	 * pass, positive values bring the following items in. The scroll stops at
+	 * the ends of the list. A distance well past the children on screen jumps
+	 * to the item estimated from their average width instead of binding every
+	 * item in between.
+	 */
+	public void scrollBy(int px) {
+		final int count = getChildCount();
+		if (mItemCount == 0 || count == 0 || px == 0)
+			return;
+
+		final int page = Math.max(1, getWidth() - mListPadding.left
+				- mListPadding.right);
+		final View first = getChildAt(0);
+		final View last = getChildAt(count - 1);
+		final int span = Math.max(first.getRight(), last.getRight())
+				- Math.min(first.getLeft(), last.getLeft());
+		if (Math.abs((long) px) > (long) span + page) {
+			// Content distance of the start padding from the first item
+			final long stride = Math.max(1, span / count);
+			final int lead = mIsRtl ? first.getRight()
+					- (getWidth() - mListPadding.right) : mListPadding.left
+					- first.getLeft();
+			final long target = mFirstPosition * stride + lead
+					+ (mIsRtl ? -(long) px : px);
+
+			int position = 0;
+			int offset = 0;
+			if (target >= mItemCount * stride) {
+				position = mItemCount - 1;
+			} else if (target > 0) {
+				position = (int) (target / stride);
+				offset = (int) (position * stride - target);
+			}
+			if (position < mFirstPosition || position >= mFirstPosition + count) {
+				scrollToPositionWithOffset(position, offset);
+				return;
+			}
+		}
+
+		mFlingRunnable.stop();
+
+		// Move at most a screen at a time so the children in between are laid
+		// out and the fill always starts from an attached child
+		int remaining = -px;
+		while (remaining != 0) {
+			final int step = Math.max(-page, Math.min(page, remaining));
+			final int limited = getLimitedMotionScrollAmount(step < 0, step);
+			if (limited == 0)
+				break;
+			trackMotionScroll(limited);
+			remaining -= limited;
+			if (limited != step)
+				break;
+		}
+		onFinishedMovement();
+	}
+
+	/**
+	 * Scrolls so that the given item starts <code>offset</code> pixels from
+	 * the start padding, without a layout pass. If the item overlaps the
+	 * children on screen they are just shifted and the gap filled, otherwise
+	 * only the new window of children is built. The list is not scrolled past
+	 * its ends.
+	 *
+	 * @param position
+	 *            Adapter position of the item
+	 * @param offset
+	 *            Distance of the item from the start padding in pixels
+	 */
+	public void scrollToPositionWithOffset(int position, int offset) {
+		if (position < 0 || position >= mItemCount)
+			return;
+
+		// Not laid out yet, or a layout is pending anyway
+		if (getChildCount() == 0 || mDataChanged || isLayoutRequested()) {
+			setSelection(position);
+			return;
+		}
+
+		mFlingRunnable.stop();
+
+		final View child = getChildAt(position - mFirstPosition);
+		if (child != null) {
+			final int delta = mIsRtl ? (getWidth() - mListPadding.right
+					- offset - child.getRight()) : (mListPadding.left + offset
+					- child.getLeft());
+			scrollBy(-delta);
+			return;
+		}
+
+		// All views go in recycler, the ones still visible are taken back
+		recycleAllViews();
+		detachAllViewsFromParent();
+		mChildEdges.clear();
+		mRightMost = 0;
+		mLeftMost = 0;
+
+		mFirstPosition = position;
+		if (mIsRtl)
+			makeAndAddView(position, position - mSelectedPosition, getWidth()
+					- mListPadding.right - offset, false);
+		else
+			makeAndAddView(position, position - mSelectedPosition,
+					mListPadding.left + offset, true);
+
+		fillToGalleryRight();
+		fillToGalleryLeft();
+		mRecycler.clear();
+
+		// The old selection went away with its window
+		if (mSelectedPosition < mFirstPosition
+				|| mSelectedPosition >= mFirstPosition + getChildCount()) {
+			setSelectedPositionInt(position);
+			setNextSelectedPositionInt(position);
+			checkSelectionChanged();
+		}
+		updateSelectedItemMetadata();
+
+		if (mImpressionTracker != null)
+			mImpressionTracker.update();
+
+		// Pull back an end of the list that came loose from its edge
+		if (!mIsRtl) {
+			final int startGap = getChildAt(0).getLeft() - mListPadding.left;
+			if (mFirstPosition == 0 && startGap > 0)
+				trackMotionScroll(-startGap);
+
+			final View last = getChildAt(getChildCount() - 1);
+			final int endGap = getWidth() - mListPadding.right - last.getRight();
+			if (mFirstPosition + getChildCount() == mItemCount && endGap > 0)
+				trackMotionScroll(endGap);
+		}
+
+		onScrollChanged(0, 0, 0, 0);
+		invalidate();
+	}
+
+	/**
+	 * Moves the children right so that the last item ends at the right edge,
+	 * as far as the first item allows, and fills in on the left. Only during
+	 * layout, left to right.
+	 */
+	private void closeEndGap() {
+		final int count = getChildCount();
+		if (count == 0 || mFirstPosition + count != mItemCount)
+			return;
+
+		int shift = getWidth() - mListPadding.right
+				- getChildAt(count - 1).getRight();
+		if (mFirstPosition == 0)
+			shift = Math.min(shift, mListPadding.left
+					- getChildAt(0).getLeft());
+		if (shift <= 0)
+			return;
+
+		offsetChildrenLeftAndRight(shift);
+		fillToGalleryLeft();
+	}
+
+	/**
+	 * Captures where the list is scrolled to, e.g. before the row holding it
+	 * is recycled by an outer list. See {@link ScrollStateCache}.
+	 *
+	 * @param out
+	 *            State to fill in, or null to allocate one.
+	 * @return The filled in state.
+	 */
+	public ScrollState saveScrollState(ScrollState out) {
+		final ScrollState state = out != null ? out : new ScrollState();
+		final View anchor = getSelectedView();
+		final int count = getChildCount();
+
+		if (anchor == null || mAdapter == null) {
+			state.reset();
+			return state;
+		}
+
+		state.anchorPosition = mSelectedPosition;
+		state.anchorId = mAdapter.hasStableIds() ? mAdapter
+				.getItemId(mSelectedPosition) : INVALID_ROW_ID;
+		state.offset = anchor.getLeft() - mListPadding.left;
+		state.itemWidthHint = (getChildAt(count - 1).getRight()
+				- getChildAt(0).getLeft() + mSpacing)
+				/ count;
+		return state;
+	}
+
+	/**
+	 * Brings the list back to a captured scroll position in the next layout
+	 * pass. The anchor item is looked up by id if the adapter has stable ids
+	 * and it moved.
+	 */
+	public void restoreScrollState(ScrollState state) {
+		if (mAdapter == null || mItemCount == 0 || state.anchorPosition < 0)
+			return;
+
+		final int position = Math.min(state.anchorPosition, mItemCount - 1);
+		int offset = state.offset;
+
+		// Keep the end of the list at its edge if the hint says it would
+		// come loose: move the anchor right until the tail ends at the edge,
+		// but not so far that the start of the list comes loose instead
+		if (state.itemWidthHint > 0 && getWidth() > 0) {
+			final long tail = (long) (mItemCount - position)
+					* state.itemWidthHint - mSpacing;
+			final long head = (long) position * state.itemWidthHint;
+			final int room = getWidth() - mListPadding.left
+					- mListPadding.right;
+			if (offset + tail < room)
+				offset = (int) Math.min(room - tail, head);
+		}
+		mSpecificLeft = mListPadding.left + offset;
+
+		if (state.anchorId != INVALID_ROW_ID && mAdapter.hasStableIds()
+				&& mAdapter.getItemId(position) != state.anchorId) {
+			// The item moved, let the layout find it by id
+			mDataChanged = true;
+			mNeedSync = true;
+			mSyncRowId = state.anchorId;
+			mSyncPosition = position;
+			mSyncMode = SYNC_SELECTED_POSITION;
+		} else {
+			setSelectedPositionInt(position);
+			setNextSelectedPositionInt(position);
+		}
+		requestLayout();
+	}
+
 	@Override
 	public View getSelectedView() {
 		if (mItemCount > 0 && mSelectedPosition >= 0) {
@@ -539,6 +1135,39 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		}
 	}
 
+	/**
+	 * Asks a {@link PrefetchingAdapter} for the items about to scroll in: a
+	 * screenful past the children on the side the content is moving from.
+	 * 
+	 * @param toLeft
+	 *            Whether the content is moving left
+	 */
+	private void prefetchAhead(boolean toLeft) {
+		final int count = getChildCount();
+		if (!(mAdapter instanceof PrefetchingAdapter) || count == 0)
+			return;
+
+		final int ahead = Math.max(count, MIN_PREFETCH_ITEMS);
+		int from, to;
+		if (toLeft != mIsRtl) {
+			from = mFirstPosition + count;
+			// Written to not overflow next to Integer.MAX_VALUE items
+			to = from + Math.min(mItemCount - 1 - from, ahead - 1);
+		} else {
+			to = mFirstPosition - 1;
+			from = Math.max(0, to - ahead + 1);
+		}
+		mPrefetchToLeft = toLeft;
+
+		// Only ask again once the range moved
+		if (from > to || (from == mPrefetchFrom && to == mPrefetchTo))
+			return;
+		mPrefetchFrom = from;
+		mPrefetchTo = to;
+		((PrefetchingAdapter) mAdapter).prefetch(from, to, mFirstPosition,
+				mFirstPosition + count - 1);
+	}
+
 	/**
 	 * Offset the horizontal location of all children of this view by the
 	 * specified number of pixels.
@@ -550,6 +1179,7 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		for (int i = getChildCount() - 1; i >= 0; i--) {
 			getChildAt(i).offsetLeftAndRight(offset);
 		}
+		mChildEdges.offset(offset);
 	}
 
 	/**
@@ -600,6 +1230,7 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		}
 
 		detachViewsFromParent(start, count);
+		mChildEdges.remove(start, count);
 
 		if (toLeft != mIsRtl) {
 			mFirstPosition += count;
@@ -613,24 +1244,56 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 			// We haven't been callbacking during the fling, so do it now
 			super.selectionChanged();
 		}
+
+		// The finger may still be down when we hit an edge
+		if (!mTouchTracker.isDragging())
+			reportScrollStateChange(OnScrollListener.SCROLL_STATE_IDLE);
+
+		// Changes held back by the dispatch policy go out now
+		resetMotionSample();
+		flushSelectionChanged();
 		invalidate();
 	}
 
 	@Override
-	protected void selectionChanged() {
-		if (!mSuppressSelectionChanged) {
-			super.selectionChanged();
-		}
+	protected boolean isInMotion() {
+		return mScrollState != OnScrollListener.SCROLL_STATE_IDLE;
 	}
 
-	/**
-	 * Looks for the child that is closest to the center and sets it as the
+	@Override
+	protected float getMotionVelocity() {
+		return mMotionVelocity;
+	}
+
+	/**
+	 * The list is at rest, the next scroll step starts a new measurement.
+	 */
+	private void resetMotionSample() {
+		mMotionVelocity = 0;
+		mLastMotionTime = -1;
+	}
+
+	@Override
+	protected void selectionChanged() {
+		if (!mSuppressSelectionChanged) {
+			super.selectionChanged();
+		}
+	}
+
+	/**
+	 * Looks for the child that is closest to the center and sets it as the
 	 * selected child.
 	 */
 	private void updateSelection() {
 
-		if (mSelectedChild == null)
+		if (mSelectedChild == null) {
+			// A selection made ahead of the children (e.g. with the keys) just
+			// scrolled in.
+			if (mSelectedPosition >= mFirstPosition
+					&& mSelectedPosition < mFirstPosition + getChildCount())
+				updateSelectedItemMetadata();
 			return;
+		}
 
 		final int childrenLeft = mListPadding.left;
 		final int childrenRight = getRight() - mListPadding.right;
@@ -655,7 +1318,31 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		// final int center = leftIn ? selLeft - mSpacing - 1: selRight +
 		// mSpacing + 1;
 
-		// FIXME: better search
+		int newSelectedChildIndex = findClosestChildIndex(center);
+
+		int newPos = mFirstPosition + newSelectedChildIndex;
+
+		if (newPos != mSelectedPosition) {
+			setSelectedPositionInt(newPos);
+			setNextSelectedPositionInt(newPos);
+			checkSelectionChanged();
+		}
+	}
+
+	/**
+	 * Finds the child containing the given x, or the one whose closest edge is
+	 * nearest to it.
+	 * 
+	 * @param center
+	 *            X in local coordinates
+	 * @return Index of the child
+	 */
+	private int findClosestChildIndex(int center) {
+		if (isChildEdgesValid()) {
+			int index = mChildEdges.indexClosestTo(center);
+			return index < 0 ? 0 : index;
+		}
+
 		int closestEdgeDistance = Integer.MAX_VALUE;
 		int newSelectedChildIndex = 0, childLeft, childRight;
 		for (int i = getChildCount() - 1; i >= 0; i--) {
@@ -677,14 +1364,16 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 				newSelectedChildIndex = i;
 			}
 		}
+		return newSelectedChildIndex;
+	}
 
-		int newPos = mFirstPosition + newSelectedChildIndex;
-
-		if (newPos != mSelectedPosition) {
-			setSelectedPositionInt(newPos);
-			setNextSelectedPositionInt(newPos);
-			checkSelectionChanged();
-		}
+	/**
+	 * The edge cache is kept in child index order, so it can only be searched
+	 * when children are laid out left to right.
+	 */
+	@Override
+	protected boolean isChildEdgesValid() {
+		return !mIsRtl && super.isChildEdgesValid();
 	}
 
 	/**
@@ -709,6 +1398,14 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		mListPadding.bottom = getPaddingBottom() > mSelectionBottomPadding ? getPaddingBottom()
 				: mSelectionBottomPadding;
 
+		if (mReattached && !mDataChanged
+				&& widthMeasureSpec == mWidthMeasureSpec
+				&& heightMeasureSpec == mHeightMeasureSpec) {
+			// Nothing changed while detached, keep the old size
+			setMeasuredDimension(getMeasuredWidth(), getMeasuredHeight());
+			return;
+		}
+
 		if (mDataChanged) {
 			handleDataChanged();
 		}
@@ -720,25 +1417,25 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		int selectedPosition = getSelectedItemPosition();
 		if (selectedPosition >= 0 && mAdapter != null
 				&& selectedPosition < mAdapter.getCount()) {
-			// Try looking in the recycler. (Maybe we were measured once
-			// already)
-			View view = mRecycler.get(selectedPosition);
+			// Measure the attached child if it is still valid
+			View view = mDataChanged ? null : getChildAt(selectedPosition
+					- mFirstPosition);
 			if (view == null) {
-				// Make a new one
-				view = mAdapter.getView(selectedPosition, null, this);
-			}
+				// Try looking in the recycler. (Maybe we were measured once
+				// already)
+				view = mRecycler.get(selectedPosition);
+				if (view == null) {
+					// Make a new one
+					view = obtainView(selectedPosition);
+				}
 
-			if (view != null) {
-				// Put in recycler for re-measuring and/or layout
-				mRecycler.put(selectedPosition, view);
+				if (view != null) {
+					// Put in recycler for re-measuring and/or layout
+					mRecycler.put(selectedPosition, view);
+				}
 			}
 
 			if (view != null) {
-				if (view.getLayoutParams() == null) {
-					mBlockLayoutRequests = true;
-					view.setLayoutParams(generateDefaultLayoutParams());
-					mBlockLayoutRequests = false;
-				}
 				measureChild(view, widthMeasureSpec, heightMeasureSpec);
 
 				preferredHeight = getChildHeight(view) + mListPadding.top
@@ -789,6 +1486,18 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 
 		mIsRtl = false;// /isLayoutRtl();
 
+		if (mReattached) {
+			mReattached = false;
+
+			// Reattached with the same adapter and data, the children and
+			// their geometry are still valid
+			if (!changed && !mDataChanged && getChildCount() > 0
+					&& mNextSelectedPosition == mSelectedPosition
+					&& mSpecificLeft == Integer.MIN_VALUE
+					&& !hasLayoutRequestedChild())
+				return;
+		}
+
 		if (mDataChanged)
 			handleDataChanged();
 
@@ -803,7 +1512,9 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		// Update selection.
 		if (mNextSelectedPosition >= 0) {
 			View view = getSelectedView();
-			if (view != null)
+			if (mSpecificLeft != Integer.MIN_VALUE)
+				leftOffset = mSpecificLeft; // Requested scroll position
+			else if (view != null)
 				leftOffset = view.getLeft(); // Restore the previous scroll
 												// position.
 			setSelectedPositionInt(mNextSelectedPosition); // Update to the new
@@ -817,6 +1528,7 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		// Clear out old views
 		// removeAllViewsInLayout();
 		detachAllViewsFromParent();
+		mChildEdges.clear();
 
 		// These will be used to give initial positions to views entering the
 		// gallery as we scroll
@@ -836,14 +1548,30 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		fillToGalleryRight();
 		fillToGalleryLeft();
 
+		// A requested position, e.g. a restored one placed with a rough
+		// item width, can leave the end of the list short of its edge
+		if (mSpecificLeft != Integer.MIN_VALUE && !mIsRtl)
+			closeEndGap();
+
+		// Every child was just laid out, their requests are handled
+		clearLayoutRequestsSeen();
+
 		// Flush any cached views that did not get reused above
 		mRecycler.clear();
+		mRecycler.trimScrap(mAdapter.getViewTypeCount());
+
+		if (mImpressionTracker != null)
+			mImpressionTracker.update();
+
+		mPrefetchFrom = mPrefetchTo = INVALID_POSITION;
+		prefetchAhead(mPrefetchToLeft);
 
 		invalidate();
 		checkSelectionChanged();
 
 		mDataChanged = false;
 		mNeedSync = false;
+		mSpecificLeft = Integer.MIN_VALUE;
 		setNextSelectedPositionInt(mSelectedPosition);
 
 		updateSelectedItemMetadata();
@@ -1042,7 +1770,7 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		}
 
 		// Nothing found in the recycler -- ask the adapter for a view
-		child = mAdapter.getView(position, null, this);
+		child = obtainView(position);
 
 		// Position the view
 		setUpChild(child, offset, x, fromLeft);
@@ -1050,6 +1778,51 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		return child;
 	}
 
+	/**
+	 * Gets a view bound to the given position from the adapter, passing it a
+	 * pooled view of the same type to convert, and makes sure it carries our
+	 * layout params with the view type it was bound for.
+	 */
+	private View obtainView(int position) {
+		final int viewType = mAdapter.getItemViewType(position);
+		final View child = mAdapter.getView(position,
+				mRecycler.getScrap(viewType), this);
+
+		final ViewGroup.LayoutParams p = child.getLayoutParams();
+		final LayoutParams lp;
+		if (p instanceof LayoutParams) {
+			lp = (LayoutParams) p;
+		} else {
+			lp = p == null ? (LayoutParams) generateDefaultLayoutParams()
+					: new LayoutParams(p);
+			mBlockLayoutRequests = true;
+			child.setLayoutParams(lp);
+			mBlockLayoutRequests = false;
+		}
+		lp.viewType = viewType;
+		lp.layoutRequestSeen = false;
+
+		// A freshly bound item starts a new visibility session
+		lp.resetVisibility();
+		return child;
+	}
+
+	@Override
+	protected int getRecycledViewType(View view, int position) {
+		final ViewGroup.LayoutParams p = view.getLayoutParams();
+		return p instanceof LayoutParams ? ((LayoutParams) p).viewType
+				: ITEM_VIEW_TYPE_IGNORE;
+	}
+
+	/**
+	 * @return The holder a {@link HolderAdapter} attached to the given child,
+	 *         or null.
+	 */
+	public static ViewHolder getChildViewHolder(View child) {
+		final ViewGroup.LayoutParams p = child.getLayoutParams();
+		return p instanceof LayoutParams ? ((LayoutParams) p).holder : null;
+	}
+
 	/**
 	 * Helper for makeAndAddView to set the position of a view and fill out its
 	 * layout parameters.
@@ -1079,14 +1852,8 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 
 		child.setSelected(offset == 0);
 
-		// Get measure specs
-		int childHeightSpec = ViewGroup.getChildMeasureSpec(mHeightMeasureSpec,
-				mListPadding.top + mListPadding.bottom, lp.height);
-		int childWidthSpec = ViewGroup.getChildMeasureSpec(mWidthMeasureSpec,
-				mListPadding.left + mListPadding.right, lp.width);
-
 		// Measure child
-		child.measure(childWidthSpec, childHeightSpec);
+		measureItem(child, lp);
 
 		int childLeft;
 		int childRight;
@@ -1105,6 +1872,214 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		}
 
 		child.layout(childLeft, childTop, childRight, childBottom);
+		mChildEdges.add(fromLeft != mIsRtl ? mChildEdges.size() : 0, childLeft,
+				childRight);
+	}
+
+	/**
+	 * Measure a child with the specs of the last measure pass.
+	 */
+	private void measureItem(View child, ViewGroup.LayoutParams lp) {
+		// Get measure specs
+		int childHeightSpec = ViewGroup.getChildMeasureSpec(mHeightMeasureSpec,
+				mListPadding.top + mListPadding.bottom, lp.height);
+		int childWidthSpec = ViewGroup.getChildMeasureSpec(mWidthMeasureSpec,
+				mListPadding.left + mListPadding.right, lp.width);
+
+		child.measure(childWidthSpec, childHeightSpec);
+	}
+
+	/**
+	 * Queues the attached children of the changed items to be rebound in
+	 * place on the next frame, so that several changes of the same item only
+	 * bind it once. Payloads are handed as a list to
+	 * {@link GranularAdapter#onBindPayloads}, a null payload makes the child
+	 * go through the adapter as the convert view.
+	 */
+	@Override
+	protected boolean rebindItems(int positionStart, int itemCount,
+			Object payload) {
+		// A full layout is coming anyway
+		if (mDataChanged || mInLayout || mAdapter == null)
+			return false;
+
+		final int first = Math.max(positionStart, mFirstPosition);
+		final int last = Math.min(positionStart + itemCount, mFirstPosition
+				+ getChildCount()) - 1;
+
+		for (int position = first; position <= last; position++) {
+			mPayloadBatch.add(position, payload);
+		}
+		return true;
+	}
+
+	private boolean rebindChild(int position, ArrayList<Object> payloads) {
+		final View child = getChildAt(position - mFirstPosition);
+
+		mBlockLayoutRequests = true;
+		try {
+			boolean bound = !payloads.contains(null)
+					&& mAdapter instanceof GranularAdapter
+					&& ((GranularAdapter) mAdapter).onBindPayloads(position,
+							child, payloads);
+			if (!bound && mAdapter.getView(position, child, this) != child)
+				return false;
+		} finally {
+			mBlockLayoutRequests = false;
+		}
+
+		if (child.isLayoutRequested() && !relayoutChild(child))
+			super.requestLayout();
+
+		child.invalidate();
+		return true;
+	}
+
+	/**
+	 * Layout requests of children are handled here when possible: only the
+	 * children that asked are measured and laid out again before the next
+	 * draw, see {@link #relayoutChildren()}. A request is taken for a child's
+	 * when a child has newly requested layout since the last call; any other
+	 * request, e.g. of the list itself, goes through the full layout.
+	 */
+	@Override
+	public void requestLayout() {
+		if (takeChildLayoutRequest() && !mBlockLayoutRequests && !mInLayout
+				&& !mDataChanged && !isLayoutRequested() && getWidth() > 0
+				&& getWindowToken() != null) {
+			addChildLayoutListener();
+			return;
+		}
+		super.requestLayout();
+	}
+
+	/**
+	 * Marks the children that requested layout as seen.
+	 *
+	 * @return true if one of them had not been seen before, i.e. the current
+	 *         request comes from it.
+	 */
+	private boolean takeChildLayoutRequest() {
+		boolean fresh = false;
+		for (int i = getChildCount() - 1; i >= 0; i--) {
+			final View child = getChildAt(i);
+			if (!(child.getLayoutParams() instanceof LayoutParams))
+				continue;
+			final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+			final boolean requested = child.isLayoutRequested();
+			if (requested && !lp.layoutRequestSeen)
+				fresh = true;
+			lp.layoutRequestSeen = requested;
+		}
+		return fresh;
+	}
+
+	private void clearLayoutRequestsSeen() {
+		for (int i = getChildCount() - 1; i >= 0; i--) {
+			final ViewGroup.LayoutParams p = getChildAt(i).getLayoutParams();
+			if (p instanceof LayoutParams)
+				((LayoutParams) p).layoutRequestSeen = false;
+		}
+	}
+
+	private void addChildLayoutListener() {
+		if (mChildLayoutObserver == null) {
+			mChildLayoutObserver = getViewTreeObserver();
+			mChildLayoutObserver.addOnPreDrawListener(mChildLayoutListener);
+			invalidate();
+		}
+	}
+
+	private void removeChildLayoutListener() {
+		if (mChildLayoutObserver != null) {
+			if (mChildLayoutObserver.isAlive())
+				mChildLayoutObserver.removeOnPreDrawListener(mChildLayoutListener);
+			mChildLayoutObserver = null;
+		}
+	}
+
+	private boolean hasLayoutRequestedChild() {
+		for (int i = getChildCount() - 1; i >= 0; i--) {
+			if (getChildAt(i).isLayoutRequested())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Lays out again the children that requested it, falling back to a full
+	 * layout if the list itself may have to change size.
+	 *
+	 * @return false if a full layout was requested instead.
+	 */
+	private boolean relayoutChildren() {
+		if (isLayoutRequested() || mDataChanged)
+			return false;
+
+		for (int i = 0; i < getChildCount(); i++) {
+			final View child = getChildAt(i);
+			if (child.isLayoutRequested() && !relayoutChild(child)) {
+				super.requestLayout();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Measures one child again and lays it out in place. The children to its
+	 * right are shifted by the change of width and the gap or overflow at the
+	 * right edge is filled or detached.
+	 *
+	 * @return false if the size of the list could depend on the change, in
+	 *         which case nothing was done.
+	 */
+	private boolean relayoutChild(View child) {
+		final int oldWidth = child.getWidth();
+		final int oldHeight = child.getHeight();
+		measureItem(child, child.getLayoutParams());
+
+		final int width = child.getMeasuredWidth();
+		final int height = child.getMeasuredHeight();
+		final ViewGroup.LayoutParams lp = getLayoutParams();
+		if (lp != null
+				&& (lp.width == ViewGroup.LayoutParams.WRAP_CONTENT && width != oldWidth
+				|| lp.height == ViewGroup.LayoutParams.WRAP_CONTENT && height != oldHeight))
+			return false;
+
+		final int left = child.getLeft();
+		final int childTop = calculateTop(child, true);
+		child.layout(left, childTop, left + width, childTop + height);
+		if (child.getLayoutParams() instanceof LayoutParams)
+			((LayoutParams) child.getLayoutParams()).layoutRequestSeen = false;
+
+		final int delta = width - oldWidth;
+		if (delta != 0) {
+			// The children to the right come after it, or before it in RTL
+			final int index = indexOfChild(child);
+			final int start = mIsRtl ? 0 : index + 1;
+			final int end = mIsRtl ? index : getChildCount();
+			for (int i = start; i < end; i++) {
+				getChildAt(i).offsetLeftAndRight(delta);
+			}
+			mChildEdges.set(index, left, left + width);
+			mChildEdges.offset(start, end, delta);
+
+			if (delta < 0)
+				fillToGalleryRight();
+			else
+				detachOffScreenChildren(false);
+			mRecycler.clear();
+
+			if (mImpressionTracker != null)
+				mImpressionTracker.update();
+
+			updateSelection();
+			updateSelector();
+		}
+
+		invalidate();
+		return true;
 	}
 
 	/**
@@ -1170,14 +2145,14 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 	public boolean onKeyDown(int keyCode, KeyEvent event) {
 		switch (keyCode) {
 		case KeyEvent.KEYCODE_DPAD_LEFT:
-			if (movePrevious()) {
+			if (moveBy(-1, event.getRepeatCount())) {
 				playSoundEffect(SoundEffectConstants.NAVIGATION_LEFT);
 				return true;
 			}
 			return false;
 
 		case KeyEvent.KEYCODE_DPAD_RIGHT:
-			if (moveNext()) {
+			if (moveBy(1, event.getRepeatCount())) {
 				playSoundEffect(SoundEffectConstants.NAVIGATION_RIGHT);
 				return true;
 			}
@@ -1187,112 +2162,79 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		return super.onKeyDown(keyCode, event);
 	}
 
-	protected boolean evaluateTouchEvent(MotionEvent __e) {
-		// Interprets motion to see if the user is dragging the View
-		// This will run in parallel with the children events
-		float dragDeltaX;
-		float dragDeltaY;
+	@Override
+	public boolean onInterceptTouchEvent(MotionEvent __e) {
+		// Watches the events dispatched to the children and steals the
+		// gesture once it turns into a horizontal drag. After that the events
+		// are delivered to onTouchEvent() directly.
+		return mTouchTracker.onInterceptTouchEvent(__e);
+	}
 
-		switch (__e.getAction()) {
-		case MotionEvent.ACTION_DOWN:
-			// Pressing...
-			isPressed = true;
-			startPressX = __e.getX();
-			startPressY = __e.getY();
-			break;
-		case MotionEvent.ACTION_MOVE:
-			// Moving...
-			if (isPressed && !isDragging) {
-				dragDeltaX = __e.getX() - startPressX;
-				dragDeltaY = __e.getY() - startPressY;
-
-				if (Math.abs(dragDeltaX) > DRAG_THRESHOLD
-						|| Math.abs(dragDeltaY) > DRAG_THRESHOLD) {
-					// Moved too far, means it's dragging!
-
-					// Inject click from correct position so superclass code
-					// knows where to drag from
-					MotionEvent me = MotionEvent.obtain(__e);
-					me.setAction(MotionEvent.ACTION_DOWN);
-					me.setLocation(__e.getX() - dragDeltaX, __e.getY()
-							- dragDeltaY);
-					super.onTouchEvent(me);
-
-					isDragging = true;
-				}
-			}
-			break;
-		case MotionEvent.ACTION_UP:
-			// Releasing...
-			if (isPressed) {
-				isPressed = false;
-				// Let go while pressed
-				if (isDragging) {
-					// Was dragging, so just go back
-					isDragging = false;
-				} else {
-					// Was not dragging, this will trigger a click
-				}
-			}
-			break;
-		}
+	@Override
+	public boolean onTouchEvent(MotionEvent event) {
+		// Give everything to the touch tracker
+		return mTouchTracker.onTouchEvent(event);
+	}
 
-		// If not dragging, event should be passed on
-		// If dragging, the event should be intercepted and interpreted by this
-		// gallery's onTouchEvent instead
-		return isDragging;
+	public void onTouchDown(MotionEvent e) {
+		handleDown(e);
 	}
 
-	@Override
-	public boolean onInterceptTouchEvent(MotionEvent __e) {
-		// Intercepts all touch screen motion events. This allows you to watch
-		// events as they are dispatched to your children, and take ownership of
-		// the current gesture at any point.
-		// Return true to steal motion events from the children and have them
-		// dispatched to this ViewGroup through onTouchEvent().
-		// The current target will receive an ACTION_CANCEL event, and no
-		// further messages will be delivered here.
+	public void onDragStart(MotionEvent e, boolean intercepted) {
+		mScrollResampler.start(mTouchTracker.getDownX(), e.getDownTime());
 
-		// return super.onInterceptTouchEvent(__e); // super always returns
-		// false
+		if (intercepted) {
+			// We never saw the down, so do what handleDown() would have done
+			// short of pressing a child.
+			mFlingRunnable.stop();
+			mDownTouchPosition = INVALID_POSITION;
+			mIsFirstScroll = true;
+		}
+	}
 
-		// If this function returns TRUE, NO children get dragging events. This
-		// only happens
-		// the first interception (mouse down); if true is returned, nothing is
-		// intercepted anymore, and
-		// events are passed to onTouchEvent directly.
-		// If FALSE is returned, this may be called again, but only if there's a
-		// children receiving the
-		// events instead of this.
-		// In sum, once onTouchEvent is called here, onInterceptTouchEvent is
-		// not called anymore.
+	public void onDrag(MotionEvent e, float distanceX, float distanceY) {
+		handleDrag(e);
+	}
 
-		// Interprets drag data
-		return evaluateTouchEvent(__e);
+	public void onDragFling(MotionEvent e, float velocityX, float velocityY) {
+		// Catch up with the finger before the fling takes over
+		mScrollResampler.finish();
+		handleFling(velocityX);
+	}
 
+	public void onTap(MotionEvent e) {
+		handleTap();
 	}
 
-	@Override
-	public boolean onTouchEvent(MotionEvent event) {
+	public void onTouchLongPress() {
+		handleLongPress();
+	}
 
-		evaluateTouchEvent(event);
+	public void onTouchUp(MotionEvent e) {
+		mScrollResampler.finish();
+		onUp(); // Helper method for lifted finger
 
-		// Give everything to the gesture detector
-		boolean retValue = mGestureDetector.onTouchEvent(event);
-		switch (event.getAction()) {
-		case MotionEvent.ACTION_UP:
-			onUp(); // Helper method for lifted finger
-			break;
+		if (mTouchTracker.isDragging() && mFlingRunnable.isFinished()) {
+			onFinishedMovement();
+			reportScrollStateChange(OnScrollListener.SCROLL_STATE_IDLE);
+		}
+	}
 
-		case MotionEvent.ACTION_CANCEL:
-			onCancel();
-			break;
+	public void onTouchCancel(MotionEvent e) {
+		mScrollResampler.stop();
+		onCancel();
 
+		if (mTouchTracker.isDragging() && mFlingRunnable.isFinished()) {
+			onFinishedMovement();
+			reportScrollStateChange(OnScrollListener.SCROLL_STATE_IDLE);
 		}
-		return retValue;
 	}
 
-	public boolean onSingleTapUp(MotionEvent e) {
+	public void onResampledScroll(int deltaX) {
+		trackMotionScroll(deltaX);
+	}
+
+	private void handleTap() {
 
 		if (mDownTouchPosition >= 0) {
 
@@ -1305,15 +2247,10 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 				performItemClick(mDownTouchView, mDownTouchPosition,
 						mAdapter.getItemId(mDownTouchPosition));
 			}
-
-			return true;
 		}
-
-		return false;
 	}
 
-	public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX,
-			float velocityY) {
+	private void handleFling(float velocityX) {
 
 		if (!mShouldCallbackDuringFling) {
 			// We want to suppress selection changes
@@ -1327,20 +2264,18 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		}
 
 		// Fling the gallery!
+		reportScrollStateChange(OnScrollListener.SCROLL_STATE_FLING);
 		mFlingRunnable.startUsingVelocity((int) -velocityX);
-
-		return true;
 	}
 
-	public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX,
-			float distanceY) {
-
-//		if (localLOGV)
-//			Log.v(Kit.TAG, String.valueOf(e2.getX() - e1.getX()));
+	/**
+	 * A move of a drag, past the touch slop.
+	 */
+	private void handleDrag(MotionEvent e) {
 
 		/*
 		 * Now's a good time to tell our parent to stop intercepting our events!
-		 * The user has moved more than the slop amount, since GestureDetector
+		 * The user has moved more than the slop amount, since TouchTracker
 		 * ensures this before calling this method. Also, if a parent is more
 		 * interested in this touch's events than we are, it would have
 		 * intercepted them by now (for example, we can assume when a Gallery is
@@ -1349,6 +2284,8 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		 */
 		getParent().requestDisallowInterceptTouchEvent(true);
 
+		reportScrollStateChange(OnScrollListener.SCROLL_STATE_TOUCH_SCROLL);
+
 		// As the user scrolls, we want to callback selection changes so
 		// related-
 		// info on the screen is up-to-date with the gallery's selection
@@ -1369,17 +2306,20 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 				mSuppressSelectionChanged = false;
 		}
 
-		// Track the motion
-		trackMotionScroll(-1 * (int) distanceX);
+		// Track the motion. The samples are resampled to the next frame, which
+		// then does a single trackMotionScroll() keeping sub-pixel remainders.
+		mScrollResampler.addMotion(e);
 
 		mIsFirstScroll = false;
-		return true;
 	}
 
-	public boolean onDown(MotionEvent e) {
+	private void handleDown(MotionEvent e) {
 
 		// Kill any existing fling/scroll
+		mKeyScrolling = false;
 		mFlingRunnable.stop();
+		mScrollResampler.stop();
+		resetMotionSample();
 
 		// Get the item's view that was touched
 		mDownTouchPosition = pointToPosition((int) e.getX(), (int) e.getY());
@@ -1391,9 +2331,47 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 
 		// Reset the multiple-scroll tracking state
 		mIsFirstScroll = true;
+	}
 
-		// Must return true to get matching events for this down event.
-		return true;
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+
+		// Stop everything that runs on its own but keep the bound children
+		// and their geometry for a reattach
+		mFlingRunnable.stop();
+		mKeyScrolling = false;
+		mScrollResampler.stop();
+		mPayloadBatch.pause();
+		removeChildLayoutListener();
+		if (mImpressionTracker != null)
+			mImpressionTracker.cancel();
+		if (mAdapter instanceof PrefetchingAdapter) {
+			((PrefetchingAdapter) mAdapter).cancelPrefetch();
+			mPrefetchFrom = mPrefetchTo = INVALID_POSITION;
+		}
+		mTouchTracker.recycle();
+		reportScrollStateChange(OnScrollListener.SCROLL_STATE_IDLE);
+
+		mDetachedAdapter = mAdapter;
+	}
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+
+		// The adapter observer stays registered while detached, so data
+		// changes in the meantime show up as mDataChanged
+		mReattached = mAdapter != null && mAdapter == mDetachedAdapter
+				&& !mDataChanged && getChildCount() > 0;
+		mDetachedAdapter = null;
+
+		mPayloadBatch.resume();
+		if (mReattached && hasLayoutRequestedChild()) {
+			addChildLayoutListener();
+		}
+		if (mImpressionTracker != null)
+			mImpressionTracker.update();
 	}
 
 	/**
@@ -1410,7 +2388,7 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		onUp();
 	}
 
-	public void onLongPress(MotionEvent e) {
+	private void handleLongPress() {
 
 		if (mDownTouchPosition < 0) {
 			return;
@@ -1421,11 +2399,6 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		dispatchLongPress(mDownTouchView, mDownTouchPosition, id);
 	}
 
-	// Unused methods from GestureDetector.OnGestureListener below
-
-	public void onShowPress(MotionEvent e) {
-	}
-
 	/**
 	 * Temporary frame to hold a child View's frame rectangle
 	 */
@@ -1449,6 +2422,21 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 			frame = mTouchFrame;
 		}
 
+		if (isChildEdgesValid()) {
+			int index = mChildEdges.indexAt(x);
+			if (index < 0)
+				return INVALID_POSITION;
+
+			View child = getChildAt(index);
+			if (child.getVisibility() == View.VISIBLE) {
+				child.getHitRect(frame);
+				if (frame.contains(x, y)) {
+					return mFirstPosition + index;
+				}
+			}
+			return INVALID_POSITION;
+		}
+
 		final int count = getChildCount();
 		for (int i = count - 1; i >= 0; i--) {
 			View child = getChildAt(i);
@@ -1462,8 +2450,6 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		return INVALID_POSITION;
 	}
 
-	// Unused methods from GestureDetector.OnGestureListener above
-
 	@Override
 	protected ContextMenu.ContextMenuInfo getContextMenuInfo() {
 		return mContextMenuInfo;
@@ -1494,21 +2480,111 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 	}
 
 	protected boolean movePrevious() {
-		if (mItemCount > 0 && mSelectedPosition > 0) {
-			scrollToSelect(mSelectedPosition - mFirstPosition - 1);
-			return true;
-		} else {
+		return moveBy(-1, 0);
+	}
+
+	protected boolean moveNext() {
+		return moveBy(1, 0);
+	}
+
+	/**
+	 * Moves the selection for a navigation key. Repeats of a held key move
+	 * further per step and just retarget the running animation, which starts
+	 * from wherever the children are, so nothing is laid out and only the
+	 * items scrolled over are bound.
+	 * 
+	 * @param direction
+	 *            -1 to move left, 1 to move right
+	 * @param repeatCount
+	 *            Repeat count of the key event
+	 * @return true if the selection moved
+	 */
+	protected boolean moveBy(int direction, int repeatCount) {
+		if (mItemCount == 0 || mSelectedPosition < 0)
+			return false;
+
+		final int step = Math.min(1 + repeatCount / KEY_REPEAT_ACCELERATION,
+				KEY_REPEAT_MAX_STEP);
+		// Written to not overflow next to Integer.MAX_VALUE items
+		final int target = direction > 0 ? mSelectedPosition
+				+ Math.min(mItemCount - 1 - mSelectedPosition, step)
+				: mSelectedPosition - Math.min(mSelectedPosition, step);
+		if (target == mSelectedPosition)
 			return false;
+
+		setSelectedPositionInt(target);
+		setNextSelectedPositionInt(target);
+		checkSelectionChanged();
+
+		final int distance = distanceToPosition(target);
+		if (distance != 0) {
+			mKeyScrolling = true;
+			mKeyScrollRetries = 0;
+			mFlingRunnable.startUsingDistance(distance);
 		}
+		return true;
 	}
 
-	protected boolean moveNext() {
-		if (mItemCount > 0 && mSelectedPosition < mItemCount - 1) {
-			scrollToSelect(mSelectedPosition - mFirstPosition + 1);
-			return true;
+	/**
+	 * Distance to scroll for the item at a position to be fully on screen.
+	 * Items that are not attached are estimated from the average width of the
+	 * attached ones.
+	 */
+	private int distanceToPosition(int position) {
+		final int count = getChildCount();
+		if (count == 0)
+			return 0;
+
+		final int index = position - mFirstPosition;
+		if (index >= 0 && index < count)
+			return distanceToView(getChildAt(index));
+
+		final View first = getChildAt(0);
+		final View last = getChildAt(count - 1);
+		final int stride = (last.getRight() - first.getLeft() + mSpacing) / count;
+
+		if (index < 0) {
+			final int left = first.getLeft() + index * stride;
+			return mListPadding.left - left;
 		} else {
+			final int right = last.getRight() + (index - count + 1) * stride;
+			return getWidth() - mListPadding.right - right;
+		}
+	}
+
+	/**
+	 * Brings the selected item fully on screen after a key animation whose
+	 * distance was estimated. If the estimate fell short and the item is
+	 * still not attached, the animation goes on with a new estimate, and after
+	 * a few tries the list jumps to the item.
+	 * 
+	 * @return true if another animation was started
+	 */
+	private boolean finishKeyScroll() {
+		if (!mKeyScrolling)
+			return false;
+
+		final View sel = getSelectedView();
+		if (sel == null) {
+			if (mKeyScrollRetries++ < MAX_KEY_SCROLL_RETRIES) {
+				final int distance = distanceToPosition(mSelectedPosition);
+				if (distance != 0) {
+					mFlingRunnable.startUsingDistance(distance);
+					return true;
+				}
+			}
+			mKeyScrolling = false;
+			scrollToPositionWithOffset(mSelectedPosition, 0);
 			return false;
 		}
+		mKeyScrolling = false;
+
+		final int distance = distanceToView(sel);
+		if (distance == 0)
+			return false;
+
+		mFlingRunnable.startUsingDistance(distance);
+		return true;
 	}
 
 	private boolean scrollToSelect(int childIndex) {
@@ -1588,7 +2664,9 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		private int mLastFlingX;
 
 		public FlingRunnable() {
-			mScroller = new Scroller(getContext());
+			// Decelerating, so that retargeting a running animation keeps its
+			// speed instead of easing in again.
+			mScroller = new Scroller(getContext(), new DecelerateInterpolator());
 		}
 
 		private void startCommon() {
@@ -1601,6 +2679,7 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 				return;
 
 			startCommon();
+			mMotionVelocity = Math.abs(initialVelocity);
 
 			int initialX = initialVelocity < 0 ? Integer.MAX_VALUE : 0;
 			mLastFlingX = initialX;
@@ -1617,6 +2696,7 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 
 			mLastFlingX = 0;
 			mScroller.startScroll(0, 0, -distance, 0, mAnimationDuration);
+			reportScrollStateChange(OnScrollListener.SCROLL_STATE_FLING);
 			post(this);
 		}
 
@@ -1625,10 +2705,17 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 			endFling();
 		}
 
+		public boolean isFinished() {
+			return mScroller.isFinished();
+		}
+
 		private void endFling() {
 			// Force the scroller's status to finished (without setting its
 			// position to the end)
 			mScroller.forceFinished(true);
+
+			if (mScrollState == OnScrollListener.SCROLL_STATE_FLING)
+				reportScrollStateChange(OnScrollListener.SCROLL_STATE_IDLE);
 		}
 
 		public void run() {
@@ -1675,11 +2762,340 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 			if (more && !mShouldStopFling) {
 				mLastFlingX = x;
 				post(this);
-			} else {
+			} else if (!finishKeyScroll()) {
 				endFling();
+				onFinishedMovement();
+			}
+		}
+
+	}
+
+	/**
+	 * Collects the payloads of changed attached items by position and binds
+	 * them all on the next frame. Payload lists are reused.
+	 */
+	private class PayloadBatch implements Runnable {
+
+		private final SparseArray<ArrayList<Object>> mPending = new SparseArray<ArrayList<Object>>();
+		private final ArrayList<ArrayList<Object>> mPool = new ArrayList<ArrayList<Object>>();
+		private boolean mPosted;
+		private boolean mPaused;
+
+		void add(int position, Object payload) {
+			ArrayList<Object> payloads = mPending.get(position);
+			if (payloads == null) {
+				final int pooled = mPool.size();
+				payloads = pooled > 0 ? mPool.remove(pooled - 1)
+						: new ArrayList<Object>(2);
+				mPending.put(position, payloads);
+			}
+			payloads.add(payload);
+
+			if (!mPosted && !mPaused) {
+				mPosted = true;
+				post(this);
+			}
+		}
+
+		/**
+		 * Keeps collecting changes without binding them, e.g. while detached.
+		 */
+		void pause() {
+			mPaused = true;
+			if (mPosted) {
+				mPosted = false;
+				removeCallbacks(this);
 			}
 		}
 
+		void resume() {
+			mPaused = false;
+			if (!mPosted && mPending.size() > 0) {
+				mPosted = true;
+				post(this);
+			}
+		}
+
+		/**
+		 * Binds the pending changes of the items still attached. Changes of
+		 * items that scrolled away are dropped, they get bound fully when they
+		 * come back.
+		 */
+		public void run() {
+			if (mPosted) {
+				mPosted = false;
+				removeCallbacks(this);
+			}
+
+			boolean rebound = true;
+			if (!mDataChanged && mAdapter != null) {
+				final int first = mFirstPosition;
+				final int count = getChildCount();
+				for (int i = 0; i < mPending.size() && rebound; i++) {
+					final int position = mPending.keyAt(i);
+					if (position >= first && position < first + count)
+						rebound = rebindChild(position, mPending.valueAt(i));
+				}
+			}
+
+			for (int i = mPending.size() - 1; i >= 0; i--) {
+				final ArrayList<Object> payloads = mPending.valueAt(i);
+				payloads.clear();
+				mPool.add(payloads);
+			}
+			mPending.clear();
+
+			if (!rebound)
+				invalidateDataSet();
+		}
+	}
+
+	/**
+	 * Keeps the visible range and the per item visibility timers up to date,
+	 * and delivers the results in batches from a posted run.
+	 * <p/>
+	 * Children in the middle of the list are fully visible, so a scroll step
+	 * only has to look at the children from each edge up to the first one that
+	 * is fully visible and already counting.
+	 */
+	private class ImpressionTracker implements Runnable {
+
+		private final OnVisibilityListener mListener;
+		private final float mMinFraction;
+		private final long mMinMillis;
+
+		/**
+		 * Last range delivered and the current one.
+		 */
+		private int mReportedFirst = INVALID_POSITION;
+		private int mReportedLast = INVALID_POSITION;
+		private int mFirst = INVALID_POSITION;
+		private int mLast = INVALID_POSITION;
+
+		/**
+		 * Reused buffer of impressed positions.
+		 */
+		private int[] mPositions = new int[16];
+
+		/**
+		 * Uptime at which the next impression is due, or Long.MAX_VALUE.
+		 */
+		private long mNextDue = Long.MAX_VALUE;
+
+		/**
+		 * Uptime the pending run is posted for, Long.MAX_VALUE if none.
+		 */
+		private long mPostedAt = Long.MAX_VALUE;
+
+		ImpressionTracker(OnVisibilityListener listener, float minFraction,
+				long minMillis) {
+			mListener = listener;
+			mMinFraction = minFraction;
+			mMinMillis = minMillis;
+		}
+
+		/**
+		 * Called after children were moved, attached or detached.
+		 */
+		void update() {
+			final int count = getChildCount();
+			final long now = SystemClock.uptimeMillis();
+
+			mFirst = count > 0 ? mFirstPosition : INVALID_POSITION;
+			mLast = count > 0 ? mFirstPosition + count - 1 : INVALID_POSITION;
+
+			// Walk in from both edges, stop at a child that is fully visible
+			// and already counting
+			int i = 0;
+			for (; i < count; i++) {
+				if (evaluate(getChildAt(i), now))
+					break;
+			}
+			for (int j = count - 1; j > i; j--) {
+				if (evaluate(getChildAt(j), now))
+					break;
+			}
+
+			if (mFirst != mReportedFirst || mLast != mReportedLast)
+				schedule(now, now);
+			else if (mNextDue != Long.MAX_VALUE)
+				schedule(now, mNextDue);
+		}
+
+		/**
+		 * Updates the visibility timer of one child.
+		 * 
+		 * @return true if the child is fully visible and already counting.
+		 */
+		private boolean evaluate(View child, long now) {
+			final LayoutParams lp = (LayoutParams) child.getLayoutParams();
+			final int left = child.getLeft();
+			final int right = child.getRight();
+			final int width = right - left;
+			final int visible = Math.min(right, getWidth() - mListPadding.right)
+					- Math.max(left, mListPadding.left);
+
+			final boolean counting = lp.visibleSince >= 0;
+			if (width > 0 && visible >= width * mMinFraction) {
+				if (!counting) {
+					lp.visibleSince = now;
+					if (!lp.impressed)
+						mNextDue = Math.min(mNextDue, now + mMinMillis);
+				}
+				return counting && visible >= width;
+			}
+
+			lp.visibleSince = -1;
+			return false;
+		}
+
+		/**
+		 * Makes sure a run is posted for no later than <code>at</code>.
+		 */
+		private void schedule(long now, long at) {
+			if (mPostedAt <= at)
+				return;
+			if (mPostedAt != Long.MAX_VALUE)
+				removeCallbacks(this);
+			mPostedAt = at;
+			postDelayed(this, Math.max(0, at - now));
+		}
+
+		void cancel() {
+			removeCallbacks(this);
+			mPostedAt = Long.MAX_VALUE;
+
+			// Time away from the screen does not count
+			for (int i = getChildCount() - 1; i >= 0; i--) {
+				final ViewGroup.LayoutParams p = getChildAt(i)
+						.getLayoutParams();
+				if (p instanceof LayoutParams)
+					((LayoutParams) p).visibleSince = -1;
+			}
+		}
+
+		public void run() {
+			mPostedAt = Long.MAX_VALUE;
+
+			if (mFirst != mReportedFirst || mLast != mReportedLast) {
+				mReportedFirst = mFirst;
+				mReportedLast = mLast;
+				mListener.onVisibleRangeChanged(HorzListView.this, mFirst,
+						mLast);
+			}
+
+			final long now = SystemClock.uptimeMillis();
+			int found = 0;
+			long nextDue = Long.MAX_VALUE;
+			for (int i = 0, count = getChildCount(); i < count; i++) {
+				final LayoutParams lp = (LayoutParams) getChildAt(i)
+						.getLayoutParams();
+				if (lp.impressed || lp.visibleSince < 0)
+					continue;
+
+				final long due = lp.visibleSince + mMinMillis;
+				if (due <= now) {
+					lp.impressed = true;
+					if (found == mPositions.length) {
+						int[] positions = new int[found * 2];
+						System.arraycopy(mPositions, 0, positions, 0, found);
+						mPositions = positions;
+					}
+					mPositions[found++] = mFirstPosition + i;
+				} else {
+					nextDue = Math.min(nextDue, due);
+				}
+			}
+
+			mNextDue = nextDue;
+			if (nextDue != Long.MAX_VALUE)
+				schedule(now, nextDue);
+
+			if (found > 0)
+				mListener.onImpressions(HorzListView.this, mPositions, found);
+		}
+	}
+
+	/**
+	 * Where a list is scrolled to, see {@link HorzListView#saveScrollState}.
+	 * Small enough to keep one per row of an outer list.
+	 */
+	public static final class ScrollState {
+
+		/**
+		 * Stable id of the anchor item, or {@link #INVALID_ROW_ID}.
+		 */
+		public long anchorId = INVALID_ROW_ID;
+
+		/**
+		 * Position of the anchor item, or {@link #INVALID_POSITION}.
+		 */
+		public int anchorPosition = INVALID_POSITION;
+
+		/**
+		 * Distance of the anchor's left edge from the left padding.
+		 */
+		public int offset;
+
+		/**
+		 * Measured width of an item including spacing, on average, or 0.
+		 */
+		public int itemWidthHint;
+
+		public void reset() {
+			anchorId = INVALID_ROW_ID;
+			anchorPosition = INVALID_POSITION;
+			offset = 0;
+			itemWidthHint = 0;
+		}
+
+		public void set(ScrollState other) {
+			anchorId = other.anchorId;
+			anchorPosition = other.anchorPosition;
+			offset = other.offset;
+			itemWidthHint = other.itemWidthHint;
+		}
+	}
+
+	/**
+	 * Holds the view of an item together with what it is bound to. Created by
+	 * a {@link HolderAdapter} and kept in the {@link LayoutParams} of its view,
+	 * so finding it again needs no tag lookup or cast of the tag.
+	 */
+	public static class ViewHolder {
+
+		public final View itemView;
+
+		int mPosition = INVALID_POSITION;
+		long mItemId = INVALID_ROW_ID;
+		int mViewType = ITEM_VIEW_TYPE_IGNORE;
+
+		public ViewHolder(View itemView) {
+			if (itemView == null)
+				throw new IllegalArgumentException("itemView may not be null");
+			this.itemView = itemView;
+		}
+
+		/**
+		 * @return Adapter position the holder was last bound to.
+		 */
+		public final int getPosition() {
+			return mPosition;
+		}
+
+		/**
+		 * @return Item id the holder was last bound to.
+		 */
+		public final long getItemId() {
+			return mItemId;
+		}
+
+		/**
+		 * @return View type the holder was created for.
+		 */
+		public final int getItemViewType() {
+			return mViewType;
+		}
 	}
 
 	/**
@@ -1689,6 +3105,32 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 	 */
 	public static class LayoutParams extends ViewGroup.LayoutParams {
 
+		/**
+		 * Holder of the view when it comes from a {@link HolderAdapter}.
+		 */
+		ViewHolder holder;
+
+		/**
+		 * Adapter view type the view was last bound for, used to pool it.
+		 */
+		int viewType = ITEM_VIEW_TYPE_IGNORE;
+
+		/**
+		 * Uptime since which the item is visible enough to count as seen, or
+		 * -1.
+		 */
+		long visibleSince = -1;
+
+		/**
+		 * The impression of the item was reported for this time on screen.
+		 */
+		boolean impressed;
+
+		/**
+		 * The layout request of the view was already seen by the list.
+		 */
+		boolean layoutRequestSeen;
+
 		public LayoutParams(Context c, AttributeSet attrs) {
 			super(c, attrs);
 		}
@@ -1700,5 +3142,10 @@ public class HorzListView extends FriendAdapterView<ListAdapter> implements
 		public LayoutParams(ViewGroup.LayoutParams source) {
 			super(source);
 		}
+
+		void resetVisibility() {
+			visibleSince = -1;
+			impressed = false;
+		}
 	}
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import android.database.DataSetObserver;
+
+/**
+ * A {@link DataSetObserver} that can also be told which items changed, see
+ * {@link GranularAdapter}. By default the granular callbacks fall back to
+ * {@link #onChanged()}.
+ *
+ * @since API 8
+ */
+public abstract class ItemChangeObserver extends DataSetObserver {
+
+	/**
+	 * Items in the given range changed but kept their position.
+	 *
+	 * @param positionStart
+	 *            First changed position
+	 * @param itemCount
+	 *            Number of changed items
+	 * @param payload
+	 *            Optional hint of what changed, or null for everything.
+	 */
+	public void onItemRangeChanged(int positionStart, int itemCount,
+			Object payload) {
+		onChanged();
+	}
+
+	/**
+	 * Items were inserted, the ones from <code>positionStart</code> on moved
+	 * up by <code>itemCount</code>.
+	 */
+	public void onItemRangeInserted(int positionStart, int itemCount) {
+		onChanged();
+	}
+
+	/**
+	 * Items were removed, the ones after them moved down by
+	 * <code>itemCount</code>.
+	 */
+	public void onItemRangeRemoved(int positionStart, int itemCount) {
+		onChanged();
+	}
+}
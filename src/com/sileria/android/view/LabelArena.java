@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+import android.widget.TextView;
+
+/**
+ * Mutable list of labels kept off the Java heap. Each label is stored as a
+ * length prefixed UTF-8 record in a direct {@link ByteBuffer} arena and found
+ * through an int offset index, so a label costs its bytes plus eight instead
+ * of a String object and its char array, and the collector has nothing to
+ * trace.
+ * <p/>
+ * Removing or replacing a label leaves its old record behind. The arena is
+ * compacted into a spare buffer once more than half of it is garbage.
+ * {@link #get(int)} decodes into a char buffer that is reused by the next
+ * call, copy the label to keep it. {@link #bindTo(TextView, int, char[])}
+ * copies it into a buffer owned by the view. Not thread safe.
+ *
+ * @since API 8
+ */
+public class LabelArena {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Most bytes a UTF-16 char can take in UTF-8.
+	 */
+	private static final int MAX_BYTES_PER_CHAR = 3;
+
+	private ByteBuffer mArena;
+
+	/**
+	 * Arena of the same size the live records are compacted into, then
+	 * swapped with {@link #mArena}.
+	 */
+	private ByteBuffer mSpare;
+
+	/**
+	 * End of the used part of the arena.
+	 */
+	private int mEnd;
+
+	/**
+	 * Bytes of records no longer referenced.
+	 */
+	private int mGarbage;
+
+	private int[] mOffsets;
+	private int mSize;
+
+	private final CharsetEncoder mEncoder = UTF8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final CharsetDecoder mDecoder = UTF8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private CharBuffer mChars = CharBuffer.allocate(64);
+
+	public LabelArena() {
+		this(16, 1024);
+	}
+
+	/**
+	 * @param capacity
+	 *            Initial number of labels
+	 * @param bytes
+	 *            Initial arena size in bytes
+	 */
+	public LabelArena(int capacity, int bytes) {
+		mOffsets = new int[Math.max(capacity, 4)];
+		mArena = ByteBuffer.allocateDirect(Math.max(bytes, 64));
+	}
+
+	/**
+	 * @return Number of labels.
+	 */
+	public int size() {
+		return mSize;
+	}
+
+	/**
+	 * @return Bytes used by the arena, live and garbage records together.
+	 */
+	public int getUsedBytes() {
+		return mEnd;
+	}
+
+	public void add(CharSequence label) {
+		add(mSize, label);
+	}
+
+	public void add(int index, CharSequence label) {
+		if (index < 0 || index > mSize)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+
+		if (mSize == mOffsets.length) {
+			final int[] offsets = new int[mSize * 2];
+			System.arraycopy(mOffsets, 0, offsets, 0, mSize);
+			mOffsets = offsets;
+		}
+		final int offset = append(label);
+		System.arraycopy(mOffsets, index, mOffsets, index + 1, mSize - index);
+		mOffsets[index] = offset;
+		mSize++;
+	}
+
+	public void set(int index, CharSequence label) {
+		checkIndex(index);
+		final int offset = append(label);
+		mGarbage += recordLength(mOffsets[index]);
+		mOffsets[index] = offset;
+		compactIfSparse();
+	}
+
+	public void remove(int index) {
+		checkIndex(index);
+		mGarbage += recordLength(mOffsets[index]);
+		System.arraycopy(mOffsets, index + 1, mOffsets, index, mSize - index - 1);
+		mSize--;
+		compactIfSparse();
+	}
+
+	/**
+	 * Removes all labels, keeping the arena.
+	 */
+	public void clear() {
+		mSize = 0;
+		mEnd = 0;
+		mGarbage = 0;
+	}
+
+	/**
+	 * Decodes a label into the shared char buffer.
+	 *
+	 * @return The label, valid until the next call.
+	 */
+	public CharSequence get(int index) {
+		decode(index);
+		return mChars;
+	}
+
+	/**
+	 * Sets a label as the text of a view without creating a string. The view
+	 * keeps drawing from the given buffer, so each view needs its own, e.g.
+	 * kept in its holder, that is not touched until the view is bound again.
+	 *
+	 * <pre>
+	 * holder.chars = labels.bindTo(holder.label, position, holder.chars);
+	 * </pre>
+	 *
+	 * @param buffer
+	 *            Chars of the view, may be null
+	 * @return The buffer the view now draws from, the given one unless it was
+	 *         too small.
+	 */
+	public char[] bindTo(TextView view, int index, char[] buffer) {
+		final int length = decode(index);
+		if (buffer == null || buffer.length < length)
+			buffer = new char[Math.max(length, 16)];
+		System.arraycopy(mChars.array(), 0, buffer, 0, length);
+		view.setText(buffer, 0, length);
+		return buffer;
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= mSize)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+	}
+
+	private int recordLength(int offset) {
+		return 4 + mArena.getInt(offset);
+	}
+
+	/**
+	 * Writes a record at the end of the arena.
+	 *
+	 * @return Its offset.
+	 */
+	private int append(CharSequence label) {
+		ensureFree(4 + label.length() * MAX_BYTES_PER_CHAR);
+
+		final int offset = mEnd;
+		mArena.limit(mArena.capacity()).position(offset + 4);
+		mEncoder.reset();
+		mEncoder.encode(CharBuffer.wrap(label), mArena, true);
+		mEncoder.flush(mArena);
+		mEnd = mArena.position();
+		mArena.putInt(offset, mEnd - offset - 4);
+		return offset;
+	}
+
+	private void ensureFree(int bytes) {
+		if (mArena.capacity() - mEnd >= bytes)
+			return;
+
+		// Compacting alone is enough if it frees the room
+		final int live = mEnd - mGarbage;
+		int capacity = mArena.capacity();
+		while (capacity - live < bytes)
+			capacity *= 2;
+		if (capacity != mArena.capacity())
+			mSpare = ByteBuffer.allocateDirect(capacity);
+		compact();
+	}
+
+	private void compactIfSparse() {
+		if (mGarbage > mEnd / 2)
+			compact();
+	}
+
+	/**
+	 * Copies the live records in index order to the spare arena and swaps.
+	 */
+	private void compact() {
+		if (mSpare == null || mSpare.capacity() < mEnd - mGarbage)
+			mSpare = ByteBuffer.allocateDirect(mArena.capacity());
+
+		final ByteBuffer from = mArena;
+		final ByteBuffer to = mSpare;
+		to.clear();
+		for (int i = 0; i < mSize; i++) {
+			final int offset = mOffsets[i];
+			from.clear();
+			final int length = recordLength(offset);
+			from.limit(offset + length).position(offset);
+			mOffsets[i] = to.position();
+			to.put(from);
+		}
+		from.clear();
+
+		mEnd = to.position();
+		mGarbage = 0;
+		mArena = to;
+		// Keep the old arena as the next spare unless it was outgrown
+		mSpare = from.capacity() == to.capacity() ? from : null;
+	}
+
+	/**
+	 * @return Length of the label decoded into the char buffer.
+	 */
+	private int decode(int index) {
+		checkIndex(index);
+
+		final int offset = mOffsets[index];
+		final int bytes = mArena.getInt(offset);
+		mArena.limit(offset + 4 + bytes).position(offset + 4);
+
+		// UTF-8 never has more chars than bytes
+		if (mChars.capacity() < bytes)
+			mChars = CharBuffer.allocate(Math.max(bytes, 2 * mChars.capacity()));
+		mChars.clear();
+		mDecoder.reset();
+		mDecoder.decode(mArena, mChars, true);
+		mDecoder.flush(mChars);
+		mChars.flip();
+
+		mArena.clear();
+		return mChars.length();
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.List;
+
+import android.widget.TextView;
+
+/**
+ * Read-only labels in a memory-mapped file, for catalogs too large to hold as
+ * strings. The file holds the label count, a table of <code>count + 1</code>
+ * byte offsets and the UTF-8 labels back to back, all big endian, see
+ * {@link #write(File, List)}. Nothing is read up front: the offsets and labels
+ * are paged in by the system as they are accessed, so the heap cost does not
+ * depend on the number of labels.
+ * <p/>
+ * {@link #get(int)} decodes into a char buffer that is reused by the next
+ * call, copy the label to keep it. {@link #bindTo(TextView, int, char[])}
+ * copies it into a buffer owned by the view. Not thread safe.
+ *
+ * @since API 8
+ */
+public class MappedLabelStore {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ByteBuffer mBuffer;
+	private final int mCount;
+	private final int mDataStart;
+
+	private final CharsetDecoder mDecoder = UTF8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private CharBuffer mChars = CharBuffer.allocate(64);
+
+	private MappedLabelStore(MappedByteBuffer buffer) throws IOException {
+		mBuffer = buffer;
+		mCount = buffer.getInt(0);
+		mDataStart = 4 * (mCount + 2);
+		if (mCount < 0 || mDataStart > buffer.capacity())
+			throw new IOException("Not a label store");
+	}
+
+	/**
+	 * Maps a file written by {@link #write(File, List)}.
+	 */
+	public static MappedLabelStore open(File file) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = raf.getChannel();
+			// The mapping stays valid after the channel is closed
+			return new MappedLabelStore(channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes labels in the format read by {@link #open(File)}.
+	 */
+	public static void write(File file, List<? extends CharSequence> labels)
+			throws IOException {
+		final int count = labels.size();
+		final ByteBuffer header = ByteBuffer.allocate(4 * (count + 2));
+		header.putInt(count);
+
+		final FileOutputStream fos = new FileOutputStream(file);
+		try {
+			final FileChannel channel = fos.getChannel();
+			channel.position(header.capacity());
+
+			final OutputStream out = new BufferedOutputStream(
+					Channels.newOutputStream(channel));
+			int offset = 0;
+			for (int i = 0; i < count; i++) {
+				header.putInt(offset);
+				final byte[] bytes = labels.get(i).toString().getBytes("UTF-8");
+				out.write(bytes);
+				offset += bytes.length;
+			}
+			header.putInt(offset);
+			out.flush();
+
+			header.flip();
+			channel.write(header, 0);
+		} finally {
+			fos.close();
+		}
+	}
+
+	/**
+	 * @return Number of labels.
+	 */
+	public int size() {
+		return mCount;
+	}
+
+	/**
+	 * Decodes a label into the shared char buffer.
+	 *
+	 * @return The label, valid until the next call.
+	 */
+	public CharSequence get(int index) {
+		decode(index);
+		return mChars;
+	}
+
+	/**
+	 * Sets a label as the text of a view without creating a string. The view
+	 * keeps drawing from the given buffer, so each view needs its own, e.g.
+	 * kept in its holder, that is not touched until the view is bound again.
+	 *
+	 * <pre>
+	 * holder.chars = store.bindTo(holder.label, position, holder.chars);
+	 * </pre>
+	 *
+	 * @param buffer
+	 *            Chars of the view, may be null
+	 * @return The buffer the view now draws from, the given one unless it was
+	 *         too small.
+	 */
+	public char[] bindTo(TextView view, int index, char[] buffer) {
+		final int length = decode(index);
+		if (buffer == null || buffer.length < length)
+			buffer = new char[Math.max(length, 16)];
+		System.arraycopy(mChars.array(), 0, buffer, 0, length);
+		view.setText(buffer, 0, length);
+		return buffer;
+	}
+
+	/**
+	 * @return Length of the label decoded into the char buffer.
+	 */
+	private int decode(int index) {
+		if (index < 0 || index >= mCount)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mCount);
+
+		final int start = mDataStart + mBuffer.getInt(4 * (index + 1));
+		final int end = mDataStart + mBuffer.getInt(4 * (index + 2));
+		mBuffer.limit(end).position(start);
+
+		// UTF-8 never has more chars than bytes
+		if (mChars.capacity() < end - start)
+			mChars = CharBuffer.allocate(Math.max(end - start, 2 * mChars.capacity()));
+		mChars.clear();
+		mDecoder.reset();
+		mDecoder.decode(mBuffer, mChars, true);
+		mDecoder.flush(mChars);
+		mChars.flip();
+
+		mBuffer.clear();
+		return mChars.length();
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.util.List;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+
+/**
+ * Holder adapter over a {@link PagedSource}, for data sets too large to keep
+ * in memory. Pages are loaded when an item of theirs is bound or prefetched in
+ * the scroll direction, kept in a page cache, and dropped once they are far
+ * from the range the list is showing or the cache is full, least recently
+ * used first. The pages on screen are never dropped. Items of pages that are
+ * not loaded yet are bound as placeholders and rebound when their page
+ * arrives. A page on screen that failed to load is asked for again after a
+ * delay that grows with each failure.
+ * <p/>
+ * The item count is the one reported by the last loaded page. Changes of it
+ * are notified as items inserted or removed at the end.
+ *
+ * @param <E>
+ *            Item type
+ * @param <VH>
+ *            Holder type
+ * @since API 8
+ */
+public abstract class PagedAdapter<E, VH extends HorzListView.ViewHolder>
+		extends HolderAdapter<VH> implements PrefetchingAdapter {
+
+	private final PagedSource<E> mSource;
+	private final int mPageSize;
+	private final int mMaxPages;
+
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Loaded pages.
+	 */
+	private final SparseArray<List<E>> mPages = new SparseArray<List<E>>();
+
+	/**
+	 * Last use of each loaded page, for the least recently used eviction.
+	 */
+	private final SparseArray<long[]> mPageUse = new SparseArray<long[]>();
+	private long mUseClock;
+
+	/**
+	 * Pages being loaded.
+	 */
+	private final SparseBooleanArray mLoading = new SparseBooleanArray();
+
+	/**
+	 * Failed loads in a row, by page.
+	 */
+	private final SparseIntArray mFailures = new SparseIntArray();
+
+	private static final long RETRY_DELAY_MILLIS = 500;
+	private static final long MAX_RETRY_DELAY_MILLIS = 30000;
+
+	/**
+	 * Pages on screen as of the last prefetch, kept loaded.
+	 */
+	private int mPinnedFirst = 0;
+	private int mPinnedLast = -1;
+
+	/**
+	 * Bumped by {@link #refresh()}, results of older loads are dropped.
+	 */
+	private int mGeneration;
+
+	private int mCount;
+
+	/**
+	 * @param source
+	 *            Where pages are loaded from
+	 * @param pageSize
+	 *            Items per page
+	 * @param maxPages
+	 *            Most pages to keep loaded
+	 * @param initialCount
+	 *            Item count to show placeholders for until the first page
+	 *            reports the real one, may be 0
+	 */
+	public PagedAdapter(PagedSource<E> source, int pageSize, int maxPages,
+			int initialCount) {
+		if (pageSize <= 0 || maxPages <= 0)
+			throw new IllegalArgumentException("pageSize and maxPages must be > 0");
+		mSource = source;
+		mPageSize = pageSize;
+		mMaxPages = maxPages;
+		mCount = initialCount;
+		if (initialCount == 0)
+			load(0);
+	}
+
+	/**
+	 * Bind a loaded item.
+	 */
+	public abstract void onBindItem(VH holder, E item, int position);
+
+	/**
+	 * Bind the placeholder of an item whose page is not loaded yet.
+	 */
+	public abstract void onBindPlaceholder(VH holder, int position);
+
+	@Override
+	public final void onBindHolder(VH holder, int position) {
+		final E item = peek(position);
+		if (item != null) {
+			onBindItem(holder, item, position);
+		} else {
+			load(position / mPageSize);
+			onBindPlaceholder(holder, position);
+		}
+	}
+
+	public int getCount() {
+		return mCount;
+	}
+
+	/**
+	 * @return The item, or null if its page is not loaded. Does not load it.
+	 */
+	public E getItem(int position) {
+		return peek(position);
+	}
+
+	public long getItemId(int position) {
+		return position;
+	}
+
+	/**
+	 * @return true if the page of the item is loaded.
+	 */
+	public boolean isLoaded(int position) {
+		return mPages.indexOfKey(position / mPageSize) >= 0;
+	}
+
+	private E peek(int position) {
+		final int page = position / mPageSize;
+		final List<E> items = mPages.get(page);
+		if (items == null)
+			return null;
+
+		mPageUse.get(page)[0] = ++mUseClock;
+		final int index = position - page * mPageSize;
+		return index < items.size() ? items.get(index) : null;
+	}
+
+	/**
+	 * Loads the pages of the range and the screen ahead of time and drops the
+	 * pages far from them.
+	 */
+	public void prefetch(int fromPosition, int toPosition, int firstVisible,
+			int lastVisible) {
+		int firstPage = Math.max(0, fromPosition) / mPageSize;
+		int lastPage = Math.max(0, toPosition) / mPageSize;
+		if (firstVisible <= lastVisible) {
+			mPinnedFirst = Math.max(0, firstVisible) / mPageSize;
+			mPinnedLast = Math.max(0, lastVisible) / mPageSize;
+			firstPage = Math.min(firstPage, mPinnedFirst);
+			lastPage = Math.max(lastPage, mPinnedLast);
+		}
+
+		// Keep about as many pages as allowed around the range
+		final int keep = Math.max(0, (mMaxPages - (lastPage - firstPage + 1)) / 2);
+		for (int i = mPages.size() - 1; i >= 0; i--) {
+			final int page = mPages.keyAt(i);
+			if (page < firstPage - keep || page > lastPage + keep) {
+				mPages.removeAt(i);
+				mPageUse.remove(page);
+			}
+		}
+
+		for (int page = firstPage; page <= lastPage; page++) {
+			load(page);
+		}
+	}
+
+	/**
+	 * Loads already handed to the source are not cancelled, their pages are
+	 * kept when they arrive.
+	 */
+	public void cancelPrefetch() {
+	}
+
+	/**
+	 * Drops all pages and loads again what is needed, e.g. after the source
+	 * changed.
+	 */
+	public void refresh() {
+		mGeneration++;
+		mPages.clear();
+		mPageUse.clear();
+		mLoading.clear();
+		mFailures.clear();
+		load(0);
+		notifyDataSetChanged();
+	}
+
+	private void load(final int page) {
+		if (mPages.indexOfKey(page) >= 0 || mLoading.get(page))
+			return;
+		if (page > 0 && page * mPageSize >= mCount)
+			return;
+
+		mLoading.put(page, true);
+		final int generation = mGeneration;
+		mSource.loadPage(page, mPageSize, new PagedSource.Callback<E>() {
+			public void onPageLoaded(final int page, final List<E> items,
+					final int totalCount) {
+				mHandler.post(new Runnable() {
+					public void run() {
+						if (generation == mGeneration)
+							pageLoaded(page, items, totalCount);
+					}
+				});
+			}
+
+			public void onPageFailed(final int page, Throwable error) {
+				mHandler.post(new Runnable() {
+					public void run() {
+						if (generation == mGeneration)
+							pageFailed(page);
+					}
+				});
+			}
+		});
+	}
+
+	private boolean isPinned(int page) {
+		return page >= mPinnedFirst && page <= mPinnedLast;
+	}
+
+	private void pageFailed(final int page) {
+		mLoading.delete(page);
+		final int failures = mFailures.get(page) + 1;
+		mFailures.put(page, failures);
+
+		// Placeholders on screen are not bound again by themselves
+		final int generation = mGeneration;
+		mHandler.postDelayed(new Runnable() {
+			public void run() {
+				if (generation == mGeneration && isPinned(page))
+					load(page);
+			}
+		}, Math.min(RETRY_DELAY_MILLIS << Math.min(failures - 1, 6),
+				MAX_RETRY_DELAY_MILLIS));
+	}
+
+	private void pageLoaded(int page, List<E> items, int totalCount) {
+		mLoading.delete(page);
+		mFailures.delete(page);
+
+		// Make room, least recently used first, but keep the pages on screen
+		while (mPages.size() >= mMaxPages) {
+			int eldest = -1;
+			for (int i = 0; i < mPageUse.size(); i++) {
+				if (isPinned(mPageUse.keyAt(i)))
+					continue;
+				if (eldest < 0
+						|| mPageUse.valueAt(i)[0] < mPageUse.valueAt(eldest)[0])
+					eldest = i;
+			}
+			if (eldest < 0)
+				break;
+			final int evicted = mPageUse.keyAt(eldest);
+			mPageUse.removeAt(eldest);
+			mPages.remove(evicted);
+		}
+		mPages.put(page, items);
+		mPageUse.put(page, new long[] { ++mUseClock });
+
+		final int oldCount = mCount;
+		if (totalCount > oldCount) {
+			mCount = totalCount;
+			notifyItemRangeInserted(oldCount, totalCount - oldCount);
+		} else if (totalCount < oldCount) {
+			mCount = totalCount;
+			for (int i = mPages.size() - 1; i >= 0; i--) {
+				if (mPages.keyAt(i) * mPageSize >= totalCount) {
+					mPageUse.remove(mPages.keyAt(i));
+					mPages.removeAt(i);
+				}
+			}
+			notifyItemRangeRemoved(totalCount, oldCount - totalCount);
+		}
+
+		// Rebind the placeholders of the page
+		final int start = page * mPageSize;
+		final int count = Math.min(items.size(), mCount - start);
+		if (count > 0)
+			notifyItemRangeChanged(start, count, null);
+	}
+}
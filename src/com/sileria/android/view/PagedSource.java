@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.util.List;
+
+/**
+ * Source of items loaded a page at a time, see {@link PagedAdapter}.
+ *
+ * @param <E>
+ *            Item type
+ * @since API 8
+ */
+public interface PagedSource<E> {
+
+	/**
+	 * Receives loaded pages. May be called on any thread.
+	 */
+	interface Callback<E> {
+
+		/**
+		 * @param page
+		 *            Index of the page
+		 * @param items
+		 *            Items of the page, fewer than a page only for the last
+		 *            one. Not modified afterwards.
+		 * @param totalCount
+		 *            Number of items in the whole source as of this load
+		 */
+		void onPageLoaded(int page, List<E> items, int totalCount);
+
+		/**
+		 * The page could not be loaded, it is asked for again when needed.
+		 */
+		void onPageFailed(int page, Throwable error);
+	}
+
+	/**
+	 * Start loading a page and return right away.
+	 *
+	 * @param page
+	 *            Index of the page, its first item is
+	 *            <code>page * pageSize</code>
+	 * @param pageSize
+	 *            Items per page
+	 * @param callback
+	 *            To call exactly once with the result
+	 */
+	void loadPage(int page, int pageSize, Callback<E> callback);
+}
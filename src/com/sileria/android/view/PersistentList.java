@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Immutable list that is changed by making new versions of it. Versions share
+ * all of their structure but the path to the changed element, so
+ * {@link #with(int, Object) with}, {@link #plus(int, Object) plus} and
+ * {@link #minus(int) minus} cost O(log n) in time and memory and an old
+ * version stays valid as long as it is referenced. That makes any instance a
+ * snapshot that can be read from other threads while the UI moves on to a
+ * newer one.
+ * <p/>
+ * Elements are kept in a balanced (AVL) tree ordered by position. Every
+ * instance carries a {@link #version()} that is unique and grows with each
+ * change, to tell whether work done on a snapshot is stale.
+ *
+ * @param <E>
+ *            Element type
+ * @since API 8
+ */
+public final class PersistentList<E> extends AbstractList<E> {
+
+	private static final AtomicLong sVersions = new AtomicLong();
+
+	private static final PersistentList<Object> EMPTY = new PersistentList<Object>(
+			null);
+
+	private final Node<E> mRoot;
+	private final long mVersion;
+
+	private PersistentList(Node<E> root) {
+		mRoot = root;
+		mVersion = sVersions.incrementAndGet();
+	}
+
+	/**
+	 * @return The empty list.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentList<E> empty() {
+		return (PersistentList<E>) EMPTY;
+	}
+
+	/**
+	 * @return A list with the elements of the collection, in O(n).
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentList<E> copyOf(Collection<? extends E> c) {
+		if (c instanceof PersistentList)
+			return (PersistentList<E>) c;
+		final Object[] elements = c.toArray();
+		return elements.length == 0 ? PersistentList.<E> empty()
+				: new PersistentList<E>(PersistentList.<E> build(elements, 0,
+						elements.length));
+	}
+
+	/**
+	 * @return Unique number of this snapshot, larger than the one of any
+	 *         snapshot it was made from.
+	 */
+	public long version() {
+		return mVersion;
+	}
+
+	@Override
+	public int size() {
+		return size(mRoot);
+	}
+
+	@Override
+	public E get(int index) {
+		checkIndex(index, size());
+		Node<E> n = mRoot;
+		for (;;) {
+			final int leftSize = size(n.left);
+			if (index < leftSize) {
+				n = n.left;
+			} else if (index > leftSize) {
+				index -= leftSize + 1;
+				n = n.right;
+			} else {
+				return n.value;
+			}
+		}
+	}
+
+	/**
+	 * @return A new version with the element at the index replaced.
+	 */
+	public PersistentList<E> with(int index, E element) {
+		checkIndex(index, size());
+		return new PersistentList<E>(set(mRoot, index, element));
+	}
+
+	/**
+	 * @return A new version with the element inserted at the index.
+	 */
+	public PersistentList<E> plus(int index, E element) {
+		checkIndex(index, size() + 1);
+		return new PersistentList<E>(insert(mRoot, index, element));
+	}
+
+	/**
+	 * @return A new version with the element added at the end.
+	 */
+	public PersistentList<E> plus(E element) {
+		return plus(size(), element);
+	}
+
+	/**
+	 * @return A new version without the element at the index.
+	 */
+	public PersistentList<E> minus(int index) {
+		checkIndex(index, size());
+		return new PersistentList<E>(delete(mRoot, index));
+	}
+
+	@Override
+	public Iterator<E> iterator() {
+		return new NodeIterator<E>(mRoot);
+	}
+
+	private static void checkIndex(int index, int size) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+					+ size);
+	}
+
+	// Tree
+
+	private static final class Node<E> {
+		final E value;
+		final Node<E> left;
+		final Node<E> right;
+		final int size;
+		final int height;
+
+		Node(E value, Node<E> left, Node<E> right) {
+			this.value = value;
+			this.left = left;
+			this.right = right;
+			this.size = size(left) + size(right) + 1;
+			this.height = Math.max(height(left), height(right)) + 1;
+		}
+	}
+
+	private static int size(Node<?> n) {
+		return n == null ? 0 : n.size;
+	}
+
+	private static int height(Node<?> n) {
+		return n == null ? 0 : n.height;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E> Node<E> build(Object[] elements, int from, int to) {
+		if (from >= to)
+			return null;
+		final int mid = (from + to) >>> 1;
+		return new Node<E>((E) elements[mid], PersistentList.<E> build(
+				elements, from, mid), PersistentList.<E> build(elements,
+				mid + 1, to));
+	}
+
+	/**
+	 * Makes a node of the parts, rotating once or twice if one side became
+	 * two levels higher than the other.
+	 */
+	private static <E> Node<E> balance(E value, Node<E> left, Node<E> right) {
+		final int hl = height(left);
+		final int hr = height(right);
+		if (hl > hr + 1) {
+			if (height(left.left) >= height(left.right))
+				return new Node<E>(left.value, left.left, new Node<E>(value,
+						left.right, right));
+			final Node<E> lr = left.right;
+			return new Node<E>(lr.value, new Node<E>(left.value, left.left,
+					lr.left), new Node<E>(value, lr.right, right));
+		}
+		if (hr > hl + 1) {
+			if (height(right.right) >= height(right.left))
+				return new Node<E>(right.value, new Node<E>(value, left,
+						right.left), right.right);
+			final Node<E> rl = right.left;
+			return new Node<E>(rl.value, new Node<E>(value, left, rl.left),
+					new Node<E>(right.value, rl.right, right.right));
+		}
+		return new Node<E>(value, left, right);
+	}
+
+	private static <E> Node<E> set(Node<E> n, int index, E element) {
+		final int leftSize = size(n.left);
+		if (index < leftSize)
+			return new Node<E>(n.value, set(n.left, index, element), n.right);
+		if (index > leftSize)
+			return new Node<E>(n.value, n.left, set(n.right, index - leftSize
+					- 1, element));
+		return new Node<E>(element, n.left, n.right);
+	}
+
+	private static <E> Node<E> insert(Node<E> n, int index, E element) {
+		if (n == null)
+			return new Node<E>(element, null, null);
+		final int leftSize = size(n.left);
+		if (index <= leftSize)
+			return balance(n.value, insert(n.left, index, element), n.right);
+		return balance(n.value, n.left, insert(n.right, index - leftSize - 1,
+				element));
+	}
+
+	private static <E> Node<E> delete(Node<E> n, int index) {
+		final int leftSize = size(n.left);
+		if (index < leftSize)
+			return balance(n.value, delete(n.left, index), n.right);
+		if (index > leftSize)
+			return balance(n.value, n.left, delete(n.right, index - leftSize
+					- 1));
+
+		if (n.left == null)
+			return n.right;
+		if (n.right == null)
+			return n.left;
+
+		// Replace by the first element on the right
+		Node<E> first = n.right;
+		while (first.left != null)
+			first = first.left;
+		return balance(first.value, n.left, delete(n.right, 0));
+	}
+
+	/**
+	 * In order walk with an explicit stack, O(1) amortized per element.
+	 */
+	private static final class NodeIterator<E> implements Iterator<E> {
+
+		private final Object[] mStack;
+		private int mDepth;
+
+		NodeIterator(Node<E> root) {
+			mStack = new Object[height(root)];
+			pushLeft(root);
+		}
+
+		private void pushLeft(Node<E> n) {
+			for (; n != null; n = n.left)
+				mStack[mDepth++] = n;
+		}
+
+		public boolean hasNext() {
+			return mDepth > 0;
+		}
+
+		@SuppressWarnings("unchecked")
+		public E next() {
+			if (mDepth == 0)
+				throw new NoSuchElementException();
+			final Node<E> n = (Node<E>) mStack[--mDepth];
+			mStack[mDepth] = null;
+			pushLeft(n.right);
+			return n.value;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
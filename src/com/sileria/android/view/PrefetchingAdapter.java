@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+/**
+ * Adapter that can get items ready ahead of time, off the main thread.
+ * {@link HorzListView} asks for the items about to scroll in, in the
+ * direction the list is moving.
+ *
+ * @see PreparedAdapter
+ * @since API 8
+ */
+public interface PrefetchingAdapter {
+
+	/**
+	 * Start getting the items in the given range ready. Must return right
+	 * away, items that are ready or on their way are skipped. The items on
+	 * screen are passed too, so whatever they use is not let go.
+	 *
+	 * @param fromPosition
+	 *            First position, inclusive
+	 * @param toPosition
+	 *            Last position, inclusive
+	 * @param firstVisible
+	 *            First position on screen, inclusive
+	 * @param lastVisible
+	 *            Last position on screen, inclusive, less than
+	 *            <code>firstVisible</code> if none
+	 */
+	void prefetch(int fromPosition, int toPosition, int firstVisible,
+			int lastVisible);
+
+	/**
+	 * Stop getting items ready, e.g. the list was detached. Items already
+	 * ready may be kept.
+	 */
+	void cancelPrefetch();
+}
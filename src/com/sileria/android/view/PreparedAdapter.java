@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+/**
+ * Holder adapter that binds in two steps. {@link #prepare(int)} does the data
+ * lookup and formatting and returns an immutable model of the item, it runs
+ * on a worker thread ahead of the viewport when the list prefetches.
+ * {@link #apply(HorzListView.ViewHolder, Object)} runs on the main thread and
+ * only sets fields from the model. If the model of an item is not ready when
+ * it is bound, it is prepared right there.
+ * <p/>
+ * Models are kept per position around the last prefetched range and dropped
+ * when their items change. Since <code>prepare</code> runs concurrently with
+ * the main thread it must only read data that is not modified meanwhile, e.g.
+ * an immutable snapshot.
+ *
+ * @param <M>
+ *            Model type
+ * @param <VH>
+ *            Holder type
+ * @since API 8
+ */
+public abstract class PreparedAdapter<M, VH extends HorzListView.ViewHolder>
+		extends HolderAdapter<VH> implements PrefetchingAdapter {
+
+	private static ExecutorService sDefaultExecutor;
+
+	private final Executor mExecutor;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	/**
+	 * Prepared models by position, main thread only.
+	 */
+	private final SparseArray<M> mModels = new SparseArray<M>();
+
+	/**
+	 * Positions being prepared on a worker, with the token of the request. A
+	 * result is only kept if its request is still there, so changing an item
+	 * drops the preparation under way.
+	 */
+	private final SparseIntArray mInFlight = new SparseIntArray();
+
+	private int mNextToken = 1;
+
+	/**
+	 * Bumped when all models are dropped or prefetch is cancelled, so workers
+	 * can skip requests that are no longer wanted.
+	 */
+	private volatile int mGeneration;
+
+	/**
+	 * Uses a small shared pool of background threads.
+	 */
+	public PreparedAdapter() {
+		this(getDefaultExecutor());
+	}
+
+	/**
+	 * @param executor
+	 *            Runs the prepare step.
+	 */
+	public PreparedAdapter(Executor executor) {
+		mExecutor = executor;
+	}
+
+	private static synchronized ExecutorService getDefaultExecutor() {
+		if (sDefaultExecutor == null) {
+			final int threads = Math.max(1, Math.min(2, Runtime.getRuntime()
+					.availableProcessors() - 1));
+			sDefaultExecutor = Executors.newFixedThreadPool(threads,
+					new ThreadFactory() {
+						public Thread newThread(final Runnable r) {
+							final Thread thread = new Thread(new Runnable() {
+								public void run() {
+									Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+									r.run();
+								}
+							}, "PreparedAdapter");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+		return sDefaultExecutor;
+	}
+
+	/**
+	 * Look up and format the item at the given position. Called on a worker
+	 * thread, or on the main thread when the model was not ready in time.
+	 *
+	 * @return Immutable model of the item.
+	 */
+	public abstract M prepare(int position);
+
+	/**
+	 * Set the fields of a holder from a prepared model. Main thread.
+	 */
+	public abstract void apply(VH holder, M model);
+
+	@Override
+	public final void onBindHolder(VH holder, int position) {
+		M model = mModels.get(position);
+		if (model == null) {
+			model = prepare(position);
+			mModels.put(position, model);
+		}
+		apply(holder, model);
+	}
+
+	public void prefetch(int fromPosition, int toPosition, int firstVisible,
+			int lastVisible) {
+		// Keep the models around the range and the screen, drop the rest
+		final int span = toPosition - fromPosition + 1;
+		int keepFrom = fromPosition - 2 * span;
+		int keepTo = toPosition + 2 * span;
+		if (firstVisible <= lastVisible) {
+			keepFrom = Math.min(keepFrom, firstVisible);
+			keepTo = Math.max(keepTo, lastVisible);
+		}
+		for (int i = mModels.size() - 1; i >= 0; i--) {
+			final int position = mModels.keyAt(i);
+			if (position < keepFrom || position > keepTo)
+				mModels.removeAt(i);
+		}
+
+		final int count = getCount();
+		for (int position = Math.max(0, fromPosition); position <= toPosition
+				&& position < count; position++) {
+			if (mModels.indexOfKey(position) < 0
+					&& mInFlight.indexOfKey(position) < 0)
+				schedule(position);
+		}
+	}
+
+	/**
+	 * Version of the data models are prepared from, e.g.
+	 * {@link PersistentList#version()}. A model finished after the version
+	 * changed is thrown away. The default is always 0.
+	 */
+	protected long getDataVersion() {
+		return 0;
+	}
+
+	private void schedule(final int position) {
+		final int generation = mGeneration;
+		final long version = getDataVersion();
+		final int token = mNextToken++;
+		mInFlight.put(position, token);
+		mExecutor.execute(new Runnable() {
+			public void run() {
+				final M model = generation == mGeneration ? prepare(position)
+						: null;
+				mHandler.post(new Runnable() {
+					public void run() {
+						if (mInFlight.get(position) != token)
+							return;
+						mInFlight.delete(position);
+						if (model != null && version == getDataVersion()
+								&& mModels.indexOfKey(position) < 0)
+							mModels.put(position, model);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Skips the preparations that have not started yet and drops the results
+	 * of the running ones. Prepared models are kept.
+	 */
+	public void cancelPrefetch() {
+		mGeneration++;
+		mInFlight.clear();
+	}
+
+	/**
+	 * Drops all prepared models, e.g. when the data was replaced.
+	 */
+	public void clearPrepared() {
+		cancelPrefetch();
+		mModels.clear();
+	}
+
+	@Override
+	public void notifyDataSetChanged() {
+		clearPrepared();
+		super.notifyDataSetChanged();
+	}
+
+	@Override
+	public void notifyDataSetInvalidated() {
+		clearPrepared();
+		super.notifyDataSetInvalidated();
+	}
+
+	/**
+	 * Drops the models of the items unless a payload says only part of them
+	 * changed, which the payload bind handles without a model.
+	 */
+	@Override
+	public void notifyItemRangeChanged(int positionStart, int itemCount,
+			Object payload) {
+		for (int i = 0; payload == null && i < itemCount; i++) {
+			mModels.delete(positionStart + i);
+			mInFlight.delete(positionStart + i);
+		}
+		super.notifyItemRangeChanged(positionStart, itemCount, payload);
+	}
+
+	@Override
+	public void notifyItemRangeInserted(int positionStart, int itemCount) {
+		clearPrepared();
+		super.notifyItemRangeInserted(positionStart, itemCount);
+	}
+
+	@Override
+	public void notifyItemRangeRemoved(int positionStart, int itemCount) {
+		clearPrepared();
+		super.notifyItemRangeRemoved(positionStart, itemCount);
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.SystemClock;
+import android.view.Choreographer;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Input stage for touch drags. Move events (including the historical samples
+ * batched into them) are collected during a frame, the touch position is
+ * resampled at the frame time and the change is handed to the target once per
+ * frame. Fractions of a pixel are carried over to the next frame instead of
+ * being dropped.
+ * <p/>
+ * On API 16 and up frames come from the {@link Choreographer}, older platforms
+ * fall back to a posted runnable.
+ *
+ * @since API 8
+ */
+public class ScrollResampler {
+
+	/**
+	 * Receiver of the per frame scroll.
+	 */
+	public interface Target {
+
+		/**
+		 * @param deltaX
+		 *            Whole pixels the touch moved since the previous call.
+		 */
+		void onResampledScroll(int deltaX);
+	}
+
+	/**
+	 * Resample this long before the frame time, so the position is mostly
+	 * interpolated between two real samples.
+	 */
+	private static final long RESAMPLE_LATENCY_MILLIS = 5;
+
+	/**
+	 * Samples closer than this are too noisy to extrapolate from.
+	 */
+	private static final long RESAMPLE_MIN_DELTA_MILLIS = 2;
+
+	/**
+	 * Never predict further ahead than this.
+	 */
+	private static final long RESAMPLE_MAX_PREDICTION_MILLIS = 8;
+
+	private final View mView;
+	private final Target mTarget;
+
+	/**
+	 * The two most recent samples.
+	 */
+	private float mPrevX;
+	private long mPrevTime;
+	private float mLastX;
+	private long mLastTime;
+
+	/**
+	 * Position handed to the target so far, including the sub-pixel remainder
+	 * that has not been applied yet.
+	 */
+	private float mAppliedX;
+
+	private boolean mActive;
+	private boolean mFramePending;
+
+	private final FrameScheduler mScheduler;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param view
+	 *            View used to post frames on older platforms.
+	 * @param target
+	 *            Receiver of the per frame scroll.
+	 */
+	public ScrollResampler(View view, Target target) {
+		mView = view;
+		mTarget = target;
+		mScheduler = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN ? new ChoreographerScheduler()
+				: new PostScheduler();
+	}
+
+	/**
+	 * Starts a drag at the given position. Any pending frame of a previous
+	 * drag is dropped.
+	 */
+	public void start(float x, long eventTime) {
+		stop();
+		mPrevX = mLastX = mAppliedX = x;
+		mPrevTime = mLastTime = eventTime;
+		mActive = true;
+	}
+
+	/**
+	 * Adds the samples of a move event and makes sure a frame is scheduled.
+	 */
+	public void addMotion(MotionEvent e) {
+		if (!mActive)
+			start(e.getX(), e.getEventTime());
+
+		final int historySize = e.getHistorySize();
+		for (int h = 0; h < historySize; h++) {
+			addSample(e.getHistoricalX(h), e.getHistoricalEventTime(h));
+		}
+		addSample(e.getX(), e.getEventTime());
+
+		if (!mFramePending) {
+			mFramePending = true;
+			mScheduler.schedule();
+		}
+	}
+
+	private void addSample(float x, long time) {
+		if (time < mLastTime)
+			return;
+		mPrevX = mLastX;
+		mPrevTime = mLastTime;
+		mLastX = x;
+		mLastTime = time;
+	}
+
+	/**
+	 * Applies whatever is left up to the last real sample right away and ends
+	 * the drag, e.g. when the finger is lifted.
+	 */
+	public void finish() {
+		if (!mActive)
+			return;
+		cancelFrame();
+		apply(mLastX);
+		mActive = false;
+	}
+
+	/**
+	 * Ends the drag without applying pending movement.
+	 */
+	public void stop() {
+		cancelFrame();
+		mActive = false;
+	}
+
+	private void cancelFrame() {
+		if (mFramePending) {
+			mFramePending = false;
+			mScheduler.cancel();
+		}
+	}
+
+	/**
+	 * Called once per frame with a pending sample.
+	 *
+	 * @param frameTimeMillis
+	 *            Frame time in the {@link SystemClock#uptimeMillis()} base.
+	 */
+	private void doFrame(long frameTimeMillis) {
+		mFramePending = false;
+		if (mActive)
+			apply(resample(frameTimeMillis - RESAMPLE_LATENCY_MILLIS));
+	}
+
+	/**
+	 * Interpolates between the last two samples, or extrapolates a short
+	 * distance past the last one.
+	 */
+	private float resample(long sampleTime) {
+		final long dt = mLastTime - mPrevTime;
+		if (dt < RESAMPLE_MIN_DELTA_MILLIS)
+			return mLastX;
+
+		long t = sampleTime;
+		if (t > mLastTime) {
+			final long maxPrediction = Math.min(dt / 2,
+					RESAMPLE_MAX_PREDICTION_MILLIS);
+			t = Math.min(t, mLastTime + maxPrediction);
+		} else if (t < mPrevTime) {
+			// Not past the older sample, the newer one is still ahead
+			return mPrevX;
+		}
+
+		final float alpha = (float) (t - mPrevTime) / dt;
+		return mPrevX + (mLastX - mPrevX) * alpha;
+	}
+
+	private void apply(float x) {
+		final int delta = (int) (x - mAppliedX);
+		if (delta != 0) {
+			// Whatever is below a pixel stays in mAppliedX for the next frame
+			mAppliedX += delta;
+			mTarget.onResampledScroll(delta);
+		}
+	}
+
+	/**
+	 * Source of frame callbacks.
+	 */
+	private interface FrameScheduler {
+		void schedule();
+
+		void cancel();
+	}
+
+	@TargetApi(16)
+	private class ChoreographerScheduler implements FrameScheduler,
+			Choreographer.FrameCallback {
+
+		public void schedule() {
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+
+		public void cancel() {
+			Choreographer.getInstance().removeFrameCallback(this);
+		}
+
+		public void doFrame(long frameTimeNanos) {
+			ScrollResampler.this.doFrame(frameTimeNanos / 1000000);
+		}
+	}
+
+	private class PostScheduler implements FrameScheduler, Runnable {
+
+		public void schedule() {
+			mView.post(this);
+		}
+
+		public void cancel() {
+			mView.removeCallbacks(this);
+		}
+
+		public void run() {
+			doFrame(SystemClock.uptimeMillis());
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the scroll positions of the {@link HorzListView}s nested in the rows
+ * of an outer list, keyed by row (e.g. the outer item id). The least recently
+ * used entries are dropped once the cache is full and their state objects are
+ * reused for new entries.
+ *
+ * <pre>
+ * // Row is recycled
+ * cache.save(rowId, carousel);
+ * // Row is bound again
+ * carousel.setAdapter(adapter);
+ * cache.restore(rowId, carousel);
+ * </pre>
+ *
+ * @since API 8
+ */
+public class ScrollStateCache {
+
+	private final int mMaxSize;
+
+	private final LinkedHashMap<Long, HorzListView.ScrollState> mStates;
+
+	/**
+	 * Entry dropped by the last put, reused by the next one.
+	 */
+	private HorzListView.ScrollState mSpare;
+
+	/**
+	 * @param maxSize
+	 *            Most rows to remember.
+	 */
+	public ScrollStateCache(int maxSize) {
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("maxSize <= 0");
+		mMaxSize = maxSize;
+		mStates = new LinkedHashMap<Long, HorzListView.ScrollState>(16, 0.75f,
+				true) {
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<Long, HorzListView.ScrollState> eldest) {
+				if (size() <= mMaxSize)
+					return false;
+				mSpare = eldest.getValue();
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Captures the scroll position of a list for a row.
+	 */
+	public void save(long key, HorzListView list) {
+		HorzListView.ScrollState state = mStates.get(key);
+		if (state == null) {
+			state = list.saveScrollState(mSpare);
+			mSpare = null;
+			mStates.put(key, state);
+		} else {
+			list.saveScrollState(state);
+		}
+	}
+
+	/**
+	 * Brings a list back to the position captured for a row, to be called
+	 * after its adapter is set.
+	 *
+	 * @return false if nothing was captured for the row.
+	 */
+	public boolean restore(long key, HorzListView list) {
+		final HorzListView.ScrollState state = mStates.get(key);
+		if (state == null)
+			return false;
+		list.restoreScrollState(state);
+		return true;
+	}
+
+	/**
+	 * @return The state captured for a row, or null.
+	 */
+	public HorzListView.ScrollState get(long key) {
+		return mStates.get(key);
+	}
+
+	public void remove(long key) {
+		mStates.remove(key);
+	}
+
+	public void clear() {
+		mStates.clear();
+		mSpare = null;
+	}
+
+	public int size() {
+		return mStates.size();
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+/**
+ * Decides whether a selection change that happens while the list is moving is
+ * dispatched right away (item selected listener and accessibility event) or
+ * coalesced with the following ones. A coalesced change is always dispatched
+ * once the list comes to rest.
+ *
+ * @see FriendAdapterView#setSelectionDispatchPolicy(SelectionDispatchPolicy)
+ * @since API 8
+ */
+public abstract class SelectionDispatchPolicy {
+
+	/**
+	 * @param sinceLastDispatch
+	 *            Milliseconds since the previous dispatch.
+	 * @param velocity
+	 *            Current speed of the list in pixels per second.
+	 * @return true to dispatch the change now.
+	 */
+	public abstract boolean shouldDispatch(long sinceLastDispatch,
+			float velocity);
+
+	/**
+	 * Dispatch at most <code>perSecond</code> times per second while moving.
+	 */
+	public static SelectionDispatchPolicy maxRate(int perSecond) {
+		final long interval = perSecond > 0 ? 1000 / perSecond : Long.MAX_VALUE;
+		return new SelectionDispatchPolicy() {
+			@Override
+			public boolean shouldDispatch(long sinceLastDispatch, float velocity) {
+				return sinceLastDispatch >= interval;
+			}
+		};
+	}
+
+	/**
+	 * Dispatch only once the list slowed down under the given speed.
+	 *
+	 * @param pixelsPerSecond
+	 *            Speed threshold.
+	 */
+	public static SelectionDispatchPolicy belowVelocity(
+			final float pixelsPerSecond) {
+		return new SelectionDispatchPolicy() {
+			@Override
+			public boolean shouldDispatch(long sinceLastDispatch, float velocity) {
+				return velocity < pixelsPerSecond;
+			}
+		};
+	}
+
+	/**
+	 * Dispatch only when the list comes to rest.
+	 */
+	public static SelectionDispatchPolicy idleOnly() {
+		return new SelectionDispatchPolicy() {
+			@Override
+			public boolean shouldDispatch(long sinceLastDispatch, float velocity) {
+				return false;
+			}
+		};
+	}
+}
@@ -0,0 +1,453 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.util.BitSet;
+
+import android.widget.Adapter;
+
+/**
+ * Multiple choice selection for adapters, keyed either by position or by
+ * stable item id.
+ * <p/>
+ * Positions are kept in a {@link BitSet} (one bit per item, ranges set a word
+ * at a time) and ids in an open addressing hash set of primitive longs, so
+ * toggling and querying are O(1) without boxing. The set can be inverted: it
+ * then holds the unselected keys, which makes {@link #selectAll()} O(1) in
+ * time and memory whatever the item count.
+ * <p/>
+ * Position keys follow inserted and removed items when the selection observes
+ * the adapter, see {@link #getObserver()}. The selected count is kept up to
+ * date as keys change, so reading it costs nothing.
+ *
+ * @since API 8
+ */
+public class SelectionModel {
+
+	private final boolean mById;
+
+	/**
+	 * Keys stored when keyed by position.
+	 */
+	private final BitSet mPositions;
+
+	/**
+	 * Keys stored when keyed by id.
+	 */
+	private final LongHashSet mIds;
+
+	/**
+	 * Number of positions set in {@link #mPositions}.
+	 */
+	private int mPositionCount;
+
+	/**
+	 * If true the stored keys are the unselected ones.
+	 */
+	private boolean mInverted;
+
+	private ItemChangeObserver mObserver;
+
+	/**
+	 * Reused by {@link #onItemRangeInserted(int, int)}.
+	 */
+	private final BitSet mScratch;
+
+	/**
+	 * Creates a selection keyed by position.
+	 */
+	public SelectionModel() {
+		this(false);
+	}
+
+	/**
+	 * @param byId
+	 *            Key the selection by the adapter's stable ids instead of
+	 *            positions, so it survives inserts and removes.
+	 */
+	public SelectionModel(boolean byId) {
+		mById = byId;
+		mPositions = byId ? null : new BitSet();
+		mScratch = byId ? null : new BitSet();
+		mIds = byId ? new LongHashSet() : null;
+	}
+
+	/**
+	 * @return true if keys are stable ids, false if they are positions.
+	 */
+	public boolean isKeyedById() {
+		return mById;
+	}
+
+	/**
+	 * @return true if the stored keys are the unselected ones, e.g. after
+	 *         {@link #selectAll()}.
+	 */
+	public boolean isInverted() {
+		return mInverted;
+	}
+
+	/**
+	 * @param key
+	 *            Position or stable id.
+	 */
+	public boolean isSelected(long key) {
+		return stored(key) != mInverted;
+	}
+
+	/**
+	 * @param key
+	 *            Position or stable id.
+	 */
+	public void setSelected(long key, boolean selected) {
+		store(key, selected != mInverted);
+	}
+
+	/**
+	 * Flips the selected state of a key.
+	 *
+	 * @return The new state.
+	 */
+	public boolean toggle(long key) {
+		final boolean selected = !isSelected(key);
+		setSelected(key, selected);
+		return selected;
+	}
+
+	/**
+	 * Selects or unselects the positions <code>from</code> (inclusive) to
+	 * <code>to</code> (exclusive). Only for position keyed selections.
+	 */
+	public void setRangeSelected(int from, int to, boolean selected) {
+		if (mById)
+			throw new IllegalStateException("Ranges need a position keyed selection");
+
+		final int stored = countPositions(from, to);
+		if (selected != mInverted) {
+			mPositions.set(from, to);
+			mPositionCount += to - from - stored;
+		} else {
+			mPositions.clear(from, to);
+			mPositionCount -= stored;
+		}
+	}
+
+	/**
+	 * Items were inserted, the position keys from <code>positionStart</code>
+	 * on move up. The new items are unselected, or selected if the selection
+	 * is inverted.
+	 */
+	public void onItemRangeInserted(int positionStart, int itemCount) {
+		if (mById || itemCount <= 0)
+			return;
+
+		// Collect the moved keys aside, so a key is not overwritten before it
+		// is moved, then put them back a word at a time
+		final BitSet positions = mPositions;
+		final BitSet moved = mScratch;
+		moved.clear();
+		for (int i = positions.nextSetBit(positionStart); i >= 0; i = positions
+				.nextSetBit(i + 1)) {
+			if (i <= Integer.MAX_VALUE - 1 - itemCount)
+				moved.set(i + itemCount);
+			else
+				mPositionCount--; // No item can be past the last position
+			if (i == Integer.MAX_VALUE)
+				break;
+		}
+		positions.clear(positionStart, Math.max(positionStart, positions.length()));
+		positions.or(moved);
+	}
+
+	/**
+	 * Items were removed, their keys are dropped and the position keys after
+	 * them move down.
+	 */
+	public void onItemRangeRemoved(int positionStart, int itemCount) {
+		if (mById || itemCount <= 0)
+			return;
+
+		final BitSet positions = mPositions;
+		final int end = positionStart + itemCount;
+		mPositionCount -= countPositions(positionStart, end);
+		positions.clear(positionStart, end);
+		for (int i = positions.nextSetBit(end); i >= 0; i = positions
+				.nextSetBit(i + 1)) {
+			positions.clear(i);
+			positions.set(i - itemCount);
+		}
+	}
+
+	/**
+	 * Observer that keeps the position keys in line with the adapter's
+	 * inserts and removes, to register with a {@link GranularAdapter}. A plain
+	 * data set change leaves the selection alone.
+	 */
+	public ItemChangeObserver getObserver() {
+		if (mObserver == null) {
+			mObserver = new ItemChangeObserver() {
+				@Override
+				public void onChanged() {
+				}
+
+				@Override
+				public void onItemRangeChanged(int positionStart,
+						int itemCount, Object payload) {
+				}
+
+				@Override
+				public void onItemRangeInserted(int positionStart, int itemCount) {
+					SelectionModel.this.onItemRangeInserted(positionStart,
+							itemCount);
+				}
+
+				@Override
+				public void onItemRangeRemoved(int positionStart, int itemCount) {
+					SelectionModel.this.onItemRangeRemoved(positionStart,
+							itemCount);
+				}
+			};
+		}
+		return mObserver;
+	}
+
+	/**
+	 * Selects every item, now and added later, in O(1).
+	 */
+	public void selectAll() {
+		clearKeys();
+		mInverted = true;
+	}
+
+	/**
+	 * Unselects every item.
+	 */
+	public void clear() {
+		clearKeys();
+		mInverted = false;
+	}
+
+	/**
+	 * An inverted selection keyed by id cannot tell which of its stored ids
+	 * still exist, count it with {@link #getSelectedCount(Adapter)}.
+	 *
+	 * @param itemCount
+	 *            Number of items in the adapter, needed for inverted
+	 *            selections.
+	 * @return Number of selected items.
+	 */
+	public int getSelectedCount(int itemCount) {
+		if (mById) {
+			if (mInverted)
+				throw new IllegalStateException("Count inverted id keyed selections with the adapter");
+			return mIds.size();
+		}
+
+		return getSelectedPositionCount(itemCount);
+	}
+
+	/**
+	 * Counts the selected items of an adapter. O(1) for position keys, a pass
+	 * over the adapter's ids for id keys.
+	 */
+	public int getSelectedCount(Adapter adapter) {
+		final int itemCount = adapter.getCount();
+		if (!mById)
+			return getSelectedPositionCount(itemCount);
+
+		int count = 0;
+		for (int i = 0; i < itemCount; i++) {
+			if (isSelected(adapter.getItemId(i)))
+				count++;
+		}
+		return count;
+	}
+
+	private int getSelectedPositionCount(int itemCount) {
+		if (!mInverted)
+			return mPositionCount;
+		// Keys past the end are not items
+		return itemCount - mPositionCount
+				+ countPositions(itemCount, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @return Number of stored positions from <code>from</code> (inclusive)
+	 *         to <code>to</code> (exclusive).
+	 */
+	private int countPositions(int from, int to) {
+		int count = 0;
+		for (int i = mPositions.nextSetBit(from); i >= 0 && i < to; i = mPositions
+				.nextSetBit(i + 1)) {
+			count++;
+			if (i == Integer.MAX_VALUE)
+				break;
+		}
+		return count;
+	}
+
+	private boolean stored(long key) {
+		if (mById)
+			return mIds.contains(key);
+		return key >= 0 && key <= Integer.MAX_VALUE && mPositions.get((int) key);
+	}
+
+	private void store(long key, boolean present) {
+		if (mById) {
+			if (present)
+				mIds.add(key);
+			else
+				mIds.remove(key);
+		} else {
+			if (key < 0 || key > Integer.MAX_VALUE)
+				throw new IndexOutOfBoundsException("Position: " + key);
+			if (mPositions.get((int) key) != present) {
+				mPositions.set((int) key, present);
+				mPositionCount += present ? 1 : -1;
+			}
+		}
+	}
+
+	private void clearKeys() {
+		if (mById)
+			mIds.clear();
+		else
+			mPositions.clear();
+		mPositionCount = 0;
+	}
+
+	/**
+	 * Open addressing (linear probing) hash set of longs.
+	 */
+	static final class LongHashSet {
+
+		private static final float LOAD_FACTOR = 0.5f;
+
+		/**
+		 * Marks an empty slot, the key with this value is tracked separately.
+		 */
+		private static final long EMPTY = Long.MIN_VALUE;
+
+		private long[] mKeys;
+		private int mSize;
+		private boolean mHasEmptyKey;
+
+		LongHashSet() {
+			mKeys = newTable(16);
+		}
+
+		private static long[] newTable(int capacity) {
+			final long[] keys = new long[capacity];
+			java.util.Arrays.fill(keys, EMPTY);
+			return keys;
+		}
+
+		int size() {
+			return mSize;
+		}
+
+		private int slot(long key) {
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32)) & (mKeys.length - 1);
+		}
+
+		boolean contains(long key) {
+			if (key == EMPTY)
+				return mHasEmptyKey;
+
+			final long[] keys = mKeys;
+			final int mask = keys.length - 1;
+			for (int i = slot(key);; i = (i + 1) & mask) {
+				if (keys[i] == EMPTY)
+					return false;
+				if (keys[i] == key)
+					return true;
+			}
+		}
+
+		void add(long key) {
+			if (key == EMPTY) {
+				if (!mHasEmptyKey) {
+					mHasEmptyKey = true;
+					mSize++;
+				}
+				return;
+			}
+
+			final long[] keys = mKeys;
+			final int mask = keys.length - 1;
+			int i = slot(key);
+			for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+				if (keys[i] == key)
+					return;
+			}
+			keys[i] = key;
+			if (++mSize > keys.length * LOAD_FACTOR)
+				rehash(keys.length * 2);
+		}
+
+		void remove(long key) {
+			if (key == EMPTY) {
+				if (mHasEmptyKey) {
+					mHasEmptyKey = false;
+					mSize--;
+				}
+				return;
+			}
+
+			final long[] keys = mKeys;
+			final int mask = keys.length - 1;
+			int i = slot(key);
+			for (; keys[i] != key; i = (i + 1) & mask) {
+				if (keys[i] == EMPTY)
+					return;
+			}
+			mSize--;
+
+			// Shift back the entries that probed past the removed one
+			int hole = i;
+			for (i = (i + 1) & mask; keys[i] != EMPTY; i = (i + 1) & mask) {
+				final int home = slot(keys[i]);
+				if (((i - home) & mask) >= ((i - hole) & mask)) {
+					keys[hole] = keys[i];
+					hole = i;
+				}
+			}
+			keys[hole] = EMPTY;
+		}
+
+		void clear() {
+			java.util.Arrays.fill(mKeys, EMPTY);
+			mSize = 0;
+			mHasEmptyKey = false;
+		}
+
+		private void rehash(int capacity) {
+			final long[] old = mKeys;
+			mKeys = newTable(capacity);
+			final int mask = capacity - 1;
+			for (long key : old) {
+				if (key == EMPTY)
+					continue;
+				int i = slot(key);
+				while (mKeys[i] != EMPTY)
+					i = (i + 1) & mask;
+				mKeys[i] = key;
+			}
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import java.util.Collection;
+
+/**
+ * Prepared adapter whose items live in a {@link PersistentList}. Changes make
+ * a new snapshot in O(log n) and are notified as granular changes, while
+ * workers preparing items, diffing or filtering keep reading the snapshot
+ * they started with. Models prepared from an older snapshot are dropped using
+ * its version.
+ *
+ * @param <E>
+ *            Item type
+ * @param <M>
+ *            Prepared model type
+ * @param <VH>
+ *            Holder type
+ * @since API 8
+ */
+public abstract class SnapshotAdapter<E, M, VH extends HorzListView.ViewHolder>
+		extends PreparedAdapter<M, VH> {
+
+	private volatile PersistentList<E> mSnapshot = PersistentList.empty();
+
+	/**
+	 * Prepare the model of an item, see {@link #prepare(int)}.
+	 *
+	 * @param item
+	 *            The item, from the snapshot current when the preparation
+	 *            started
+	 * @param position
+	 *            Its position in that snapshot
+	 */
+	public abstract M prepare(E item, int position);
+
+	@Override
+	public final M prepare(int position) {
+		final PersistentList<E> snapshot = mSnapshot;
+		return position < snapshot.size() ? prepare(snapshot.get(position),
+				position) : null;
+	}
+
+	@Override
+	protected long getDataVersion() {
+		return mSnapshot.version();
+	}
+
+	/**
+	 * @return The current items, safe to read from any thread.
+	 */
+	public PersistentList<E> getSnapshot() {
+		return mSnapshot;
+	}
+
+	/**
+	 * Replaces all items.
+	 */
+	public void submit(Collection<? extends E> items) {
+		mSnapshot = PersistentList.copyOf(items);
+		notifyDataSetChanged();
+	}
+
+	public void set(int position, E item) {
+		mSnapshot = mSnapshot.with(position, item);
+		notifyItemChanged(position, null);
+	}
+
+	public void add(int position, E item) {
+		mSnapshot = mSnapshot.plus(position, item);
+		notifyItemRangeInserted(position, 1);
+	}
+
+	public void add(E item) {
+		add(mSnapshot.size(), item);
+	}
+
+	public void remove(int position) {
+		mSnapshot = mSnapshot.minus(position);
+		notifyItemRangeRemoved(position, 1);
+	}
+
+	public int getCount() {
+		return mSnapshot.size();
+	}
+
+	public E getItem(int position) {
+		return mSnapshot.get(position);
+	}
+
+	public long getItemId(int position) {
+		return position;
+	}
+}
@@ -0,0 +1,421 @@
+/*
+ * Copyright (c) 2001 - 2012 Sileria, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific
+ * language governing permissions and limitations under the License.
+ */
+
+package com.sileria.android.view;
+
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+/**
+ * Touch tracking shared by the horizontally scrolling widgets. It watches the
+ * events a view group sees both from
+ * {@link View#onTouchEvent(MotionEvent)} and from
+ * <code>onInterceptTouchEvent</code>, decides when a touch becomes a drag
+ * using the system touch slop, and measures the release velocity with a
+ * single {@link VelocityTracker}.
+ * <p/>
+ * Nothing is allocated per event: the velocity tracker is kept for the life of
+ * the view and a drag that starts over a child is handed to the owner by
+ * rewriting the current event in place (see {@link #rewindToDown(MotionEvent)}
+ * ) instead of obtaining a copy.
+ *
+ * @since API 8
+ */
+public class TouchTracker {
+
+	/**
+	 * Callbacks from the tracker. Use {@link SimpleCallback} to only override
+	 * the ones needed.
+	 */
+	public interface Callback {
+
+		/**
+		 * A down event was delivered to the owner's <code>onTouchEvent</code>,
+		 * i.e. no child took the touch.
+		 */
+		void onTouchDown(MotionEvent e);
+
+		/**
+		 * The touch moved further than the touch slop.
+		 *
+		 * @param intercepted
+		 *            true if the touch started over a child and is being
+		 *            stolen from it by <code>onInterceptTouchEvent</code>.
+		 */
+		void onDragStart(MotionEvent e, boolean intercepted);
+
+		/**
+		 * The touch moved while dragging. Distances are the previous position
+		 * minus the current one, the same as
+		 * {@link android.view.GestureDetector.OnGestureListener#onScroll}.
+		 */
+		void onDrag(MotionEvent e, float distanceX, float distanceY);
+
+		/**
+		 * A drag was released faster than the minimum fling velocity.
+		 */
+		void onDragFling(MotionEvent e, float velocityX, float velocityY);
+
+		/**
+		 * The touch was released without dragging or long pressing.
+		 */
+		void onTap(MotionEvent e);
+
+		/**
+		 * The touch was held without dragging for the long press timeout.
+		 */
+		void onTouchLongPress();
+
+		/**
+		 * An up event was delivered to the owner's <code>onTouchEvent</code>.
+		 */
+		void onTouchUp(MotionEvent e);
+
+		/**
+		 * A cancel event was delivered to the owner's
+		 * <code>onTouchEvent</code>.
+		 */
+		void onTouchCancel(MotionEvent e);
+	}
+
+	/**
+	 * Empty implementation of {@link Callback}.
+	 */
+	public static class SimpleCallback implements Callback {
+
+		public void onTouchDown(MotionEvent e) {
+		}
+
+		public void onDragStart(MotionEvent e, boolean intercepted) {
+		}
+
+		public void onDrag(MotionEvent e, float distanceX, float distanceY) {
+		}
+
+		public void onDragFling(MotionEvent e, float velocityX, float velocityY) {
+		}
+
+		public void onTap(MotionEvent e) {
+		}
+
+		public void onTouchLongPress() {
+		}
+
+		public void onTouchUp(MotionEvent e) {
+		}
+
+		public void onTouchCancel(MotionEvent e) {
+		}
+	}
+
+	private final View mView;
+	private final Callback mCallback;
+
+	private final int mTouchSlop;
+	private final int mMinimumFlingVelocity;
+	private final int mMaximumFlingVelocity;
+
+	/**
+	 * Kept for the life of the view, see {@link #recycle()}.
+	 */
+	private VelocityTracker mVelocityTracker;
+
+	private boolean mLongPressEnabled;
+
+	/**
+	 * A down has been seen and the gesture has not ended yet.
+	 */
+	private boolean mTracking;
+
+	/**
+	 * The gesture is delivered to the owner's onTouchEvent.
+	 */
+	private boolean mOwner;
+
+	private boolean mDragging;
+	private boolean mLongPressed;
+
+	private float mDownX;
+	private float mDownY;
+	private float mLastX;
+	private float mLastY;
+
+	private float mVelocityX;
+	private float mVelocityY;
+
+	/**
+	 * Used to tell the same event apart when it is seen by both intercept and
+	 * touch handlers.
+	 */
+	private long mLastEventTime = -1;
+	private int mLastAction = -1;
+
+	/**
+	 * State saved by {@link #rewindToDown(MotionEvent)}.
+	 */
+	private int mRewoundAction;
+	private float mRewoundDeltaX;
+	private float mRewoundDeltaY;
+
+	private final Runnable mLongPressRunnable = new Runnable() {
+		public void run() {
+			mLongPressed = true;
+			mCallback.onTouchLongPress();
+		}
+	};
+
+	/**
+	 * Constructor.
+	 *
+	 * @param view
+	 *            View the events are tracked for, used for configuration and
+	 *            to post the long press.
+	 * @param callback
+	 *            Receiver of the tracked gestures.
+	 */
+	public TouchTracker(View view, Callback callback) {
+		mView = view;
+		mCallback = callback;
+
+		final ViewConfiguration configuration = ViewConfiguration.get(view
+				.getContext());
+		mTouchSlop = configuration.getScaledTouchSlop();
+		mMinimumFlingVelocity = configuration.getScaledMinimumFlingVelocity();
+		mMaximumFlingVelocity = configuration.getScaledMaximumFlingVelocity();
+	}
+
+	/**
+	 * Whether a touch held in place should report
+	 * {@link Callback#onTouchLongPress()}. Disabled by default.
+	 */
+	public void setLongPressEnabled(boolean enabled) {
+		mLongPressEnabled = enabled;
+	}
+
+	/**
+	 * @return The system touch slop in pixels used to detect a drag.
+	 */
+	public int getTouchSlop() {
+		return mTouchSlop;
+	}
+
+	/**
+	 * @return true if the current touch has moved past the touch slop.
+	 */
+	public boolean isDragging() {
+		return mDragging;
+	}
+
+	/**
+	 * @return X of the down event of the current touch.
+	 */
+	public float getDownX() {
+		return mDownX;
+	}
+
+	/**
+	 * @return Horizontal velocity in pixels per second measured at the last up
+	 *         event.
+	 */
+	public float getXVelocity() {
+		return mVelocityX;
+	}
+
+	/**
+	 * @return Vertical velocity in pixels per second measured at the last up
+	 *         event.
+	 */
+	public float getYVelocity() {
+		return mVelocityY;
+	}
+
+	/**
+	 * Feed from <code>onInterceptTouchEvent</code>.
+	 *
+	 * @return true once the touch became a drag and should be stolen from the
+	 *         children.
+	 */
+	public boolean onInterceptTouchEvent(MotionEvent e) {
+		if (track(e) && !mOwner) {
+			final int action = e.getAction() & MotionEvent.ACTION_MASK;
+			if (action == MotionEvent.ACTION_UP
+					|| action == MotionEvent.ACTION_CANCEL)
+				reset();
+		}
+
+		// Once stolen the rest of the gesture goes to onTouchEvent
+		if (mDragging)
+			mOwner = true;
+		return mDragging;
+	}
+
+	/**
+	 * Feed from {@link View#onTouchEvent(MotionEvent)}.
+	 *
+	 * @return Always true, so that the rest of the gesture is delivered.
+	 */
+	public boolean onTouchEvent(MotionEvent e) {
+		final boolean fresh = track(e);
+
+		switch (e.getAction() & MotionEvent.ACTION_MASK) {
+		case MotionEvent.ACTION_DOWN:
+			if (!mOwner) {
+				mOwner = true;
+				mCallback.onTouchDown(e);
+				if (mLongPressEnabled) {
+					mView.postDelayed(mLongPressRunnable,
+							ViewConfiguration.getTapTimeout()
+									+ ViewConfiguration.getLongPressTimeout());
+				}
+			}
+			break;
+
+		case MotionEvent.ACTION_MOVE:
+			if (fresh && mDragging) {
+				final float x = e.getX();
+				final float y = e.getY();
+				final float distanceX = mLastX - x;
+				final float distanceY = mLastY - y;
+				mLastX = x;
+				mLastY = y;
+				if (distanceX != 0 || distanceY != 0)
+					mCallback.onDrag(e, distanceX, distanceY);
+			}
+			break;
+
+		case MotionEvent.ACTION_UP:
+			if (mDragging) {
+				if (Math.abs(mVelocityX) > mMinimumFlingVelocity
+						|| Math.abs(mVelocityY) > mMinimumFlingVelocity)
+					mCallback.onDragFling(e, mVelocityX, mVelocityY);
+			} else if (mOwner && !mLongPressed) {
+				mCallback.onTap(e);
+			}
+			mCallback.onTouchUp(e);
+			reset();
+			break;
+
+		case MotionEvent.ACTION_CANCEL:
+			mCallback.onTouchCancel(e);
+			reset();
+			break;
+		}
+		return true;
+	}
+
+	/**
+	 * Common bookkeeping for both feeds.
+	 *
+	 * @return false if this event was already tracked through the other feed.
+	 */
+	private boolean track(MotionEvent e) {
+		final int action = e.getAction() & MotionEvent.ACTION_MASK;
+		final long eventTime = e.getEventTime();
+		if (eventTime == mLastEventTime && action == mLastAction)
+			return false;
+		mLastEventTime = eventTime;
+		mLastAction = action;
+
+		final float x = e.getX();
+		final float y = e.getY();
+
+		switch (action) {
+		case MotionEvent.ACTION_DOWN:
+			reset();
+			if (mVelocityTracker == null)
+				mVelocityTracker = VelocityTracker.obtain();
+			else
+				mVelocityTracker.clear();
+			mVelocityTracker.addMovement(e);
+
+			mTracking = true;
+			mDownX = mLastX = x;
+			mDownY = mLastY = y;
+			break;
+
+		case MotionEvent.ACTION_MOVE:
+			if (!mTracking)
+				break;
+			mVelocityTracker.addMovement(e);
+
+			if (!mDragging && Math.abs(x - mDownX) > mTouchSlop) {
+				mDragging = true;
+				mView.removeCallbacks(mLongPressRunnable);
+
+				// The first drag distance is measured from the down position
+				mLastX = mDownX;
+				mLastY = mDownY;
+				mCallback.onDragStart(e, !mOwner);
+			}
+			break;
+
+		case MotionEvent.ACTION_UP:
+			if (!mTracking)
+				break;
+			mVelocityTracker.addMovement(e);
+			mVelocityTracker.computeCurrentVelocity(1000,
+					mMaximumFlingVelocity);
+			mVelocityX = mVelocityTracker.getXVelocity();
+			mVelocityY = mVelocityTracker.getYVelocity();
+			break;
+		}
+		return true;
+	}
+
+	private void reset() {
+		mView.removeCallbacks(mLongPressRunnable);
+		mTracking = false;
+		mOwner = false;
+		mDragging = false;
+		mLongPressed = false;
+	}
+
+	/**
+	 * Turns the given event into a down at the position the current touch
+	 * started, so that a handler that missed the real down can start from
+	 * there. The event must be put back with {@link #restore(MotionEvent)}
+	 * before returning it to the framework.
+	 */
+	public void rewindToDown(MotionEvent e) {
+		mRewoundAction = e.getAction();
+		mRewoundDeltaX = mDownX - e.getX();
+		mRewoundDeltaY = mDownY - e.getY();
+		e.setAction(MotionEvent.ACTION_DOWN);
+		e.offsetLocation(mRewoundDeltaX, mRewoundDeltaY);
+	}
+
+	/**
+	 * Undoes {@link #rewindToDown(MotionEvent)}.
+	 */
+	public void restore(MotionEvent e) {
+		e.offsetLocation(-mRewoundDeltaX, -mRewoundDeltaY);
+		e.setAction(mRewoundAction);
+	}
+
+	/**
+	 * Releases the velocity tracker, call when the view is detached. It is
+	 * obtained again on the next touch.
+	 */
+	public void recycle() {
+		reset();
+		if (mVelocityTracker != null) {
+			mVelocityTracker.recycle();
+			mVelocityTracker = null;
+		}
+	}
+}